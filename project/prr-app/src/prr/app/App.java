@@ -1,6 +1,10 @@
 package prr.app;
 
+import java.io.IOException;
+
+import prr.ImportReport;
 import prr.NetworkManager;
+import prr.clients.Tariffs;
 import prr.exceptions.ImportFileException;
 import pt.tecnico.uilib.Dialog;
 
@@ -10,13 +14,28 @@ import pt.tecnico.uilib.Dialog;
 public class App {
 
 	public static void main(String[] args) {
+		try {
+			// a bad tariffs file is reported now, not when first rating
+			Tariffs.load();
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.println("Cannot load tariffs from "
+							   + System.getProperty("tariffs") + ": " + e);
+			System.exit(1);
+		}
+
 		try (var ui = Dialog.UI) {
 			var receiver = new NetworkManager();
 
 			String datafile = System.getProperty("import");
 			if (datafile != null) {
 				try {
-					receiver.importFile(datafile);
+					if (Boolean.getBoolean("import.report")) {
+						// import every valid line and list the rejected ones
+						ImportReport report = receiver.importFileWithReport(datafile);
+						System.err.print(report);
+					} else {
+						receiver.importFile(datafile);
+					}
 				} catch (ImportFileException e) {
 					// no behavior described: just present the problem
 					e.printStackTrace();
@@ -24,6 +43,13 @@ public class App {
 			}
 
 			(new prr.app.main.Menu(receiver)).open();
+
+			try {
+				// saves are written in the background
+				receiver.awaitSaved();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 	}
 
@@ -1,6 +1,7 @@
 package prr.app.clients;
 
 import prr.Network;
+import prr.clients.Money;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 import prr.app.exceptions.UnknownClientKeyException;
@@ -20,8 +21,8 @@ class DoShowClientPaymentsAndDebts extends Command<Network> {
 		try {
 			_display.popup(Message.clientPaymentsAndDebts (
 				stringField("key"),
-				Math.round(_receiver.getClientPayments(stringField("key"))),
-				Math.round(_receiver.getClientDebts(stringField("key")))
+				Money.round(_receiver.getClientPayments(stringField("key"))),
+				Money.round(_receiver.getClientDebts(stringField("key")))
 			));
 		} catch (prr.exceptions.UnknownClientKeyException e) {
 			throw new UnknownClientKeyException(e.getKey());
@@ -1,6 +1,7 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.query.Query;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -15,7 +16,7 @@ class DoShowAllCommunications extends Command<Network> {
 
 	@Override
 	protected final void execute() throws CommandException {
-        _display.addAll(_receiver.getAllCommunications());
+		_display.addAll(Query.communications(_receiver).list());
 		_display.display();
 	}
 }
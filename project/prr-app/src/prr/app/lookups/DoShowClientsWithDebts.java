@@ -1,7 +1,8 @@
 package prr.app.lookups;
 
-import java.util.stream.Collectors;
 import prr.Network;
+import prr.query.ClientCriteria;
+import prr.query.Query;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -16,17 +17,10 @@ class DoShowClientsWithDebts extends Command<Network> {
 
   @Override
   protected final void execute() throws CommandException {
-    _display.addAll(_receiver.getAllClients().stream()
-        .filter(client -> client.hasDebts())
-        .sorted(
-          (client1, client2) ->
-            Long.compare(
-              Math.round(client2.getDebts()),
-              Math.round(client1.getDebts())
-            )
-        )
-        .collect(Collectors.toList())
-    );
+    _display.addAll(Query.clients(_receiver)
+        .where(ClientCriteria.withDebts())
+        .orderBy(ClientCriteria.BY_DEBTS)
+        .list());
     _display.display();
   }
 }
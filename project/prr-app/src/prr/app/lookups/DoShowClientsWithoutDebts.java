@@ -1,9 +1,10 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.query.ClientCriteria;
+import prr.query.Query;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
-import java.util.stream.Collectors;
 
 /**
  * Show clients with positive balance.
@@ -16,9 +17,8 @@ class DoShowClientsWithoutDebts extends Command<Network> {
 
 	@Override
 	protected final void execute() throws CommandException {
-        _display.addAll(_receiver.getAllClients().stream().filter(
-			client -> !client.hasDebts()
-		).collect(Collectors.toList()));
+		_display.addAll(Query.clients(_receiver)
+				.where(ClientCriteria.withoutDebts()).list());
 		_display.display();
 	}
 }
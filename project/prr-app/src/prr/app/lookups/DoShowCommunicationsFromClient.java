@@ -1,6 +1,9 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.clients.Client;
+import prr.query.CommunicationCriteria;
+import prr.query.Query;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 import prr.app.exceptions.UnknownClientKeyException;
@@ -18,7 +21,9 @@ class DoShowCommunicationsFromClient extends Command<Network> {
 	@Override
 	protected final void execute() throws CommandException {
 		try {
-			_display.addAll(_receiver.getCommunicationsFromClient(stringField("key")));
+			Client client = _receiver.getClient(stringField("key"));
+			_display.addAll(Query.communications(_receiver)
+					.where(CommunicationCriteria.fromClient(client)).list());
 			_display.display();
 		} catch (prr.exceptions.UnknownClientKeyException e) {
 			throw new UnknownClientKeyException(e.getKey());
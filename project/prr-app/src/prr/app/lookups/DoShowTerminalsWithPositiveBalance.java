@@ -1,9 +1,10 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.query.Query;
+import prr.query.TerminalCriteria;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
-import java.util.stream.Collectors;
 
 /**
  * Show terminals with positive balance.
@@ -16,9 +17,8 @@ class DoShowTerminalsWithPositiveBalance extends Command<Network> {
 
 	@Override
 	protected final void execute() throws CommandException {
-		_display.addAll(_receiver.getAllTerminals().stream().filter(
-			terminal -> terminal.hasPositiveBalance()
-		).collect(Collectors.toList()));
+		_display.addAll(Query.terminals(_receiver)
+				.where(TerminalCriteria.withPositiveBalance()).list());
 		_display.display();
 	}
 }
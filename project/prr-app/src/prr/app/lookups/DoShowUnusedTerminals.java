@@ -1,9 +1,10 @@
 package prr.app.lookups;
 
 import prr.Network;
+import prr.query.Query;
+import prr.query.TerminalCriteria;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
-import java.util.stream.Collectors;
 
 /**
  * Show unused terminals (without communications).
@@ -16,9 +17,8 @@ class DoShowUnusedTerminals extends Command<Network> {
 
 	@Override
 	protected final void execute() throws CommandException {
-        _display.addAll(_receiver.getAllTerminals().stream().filter(
-			terminal -> terminal.isUnused()
-		).collect(Collectors.toList()));
+		_display.addAll(Query.terminals(_receiver)
+				.where(TerminalCriteria.unused()).list());
 		_display.display();
 	}
 }
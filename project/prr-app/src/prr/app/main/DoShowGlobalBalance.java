@@ -1,6 +1,7 @@
 package prr.app.main;
 
 import prr.Network;
+import prr.clients.Money;
 import pt.tecnico.uilib.menus.Command;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -16,8 +17,8 @@ class DoShowGlobalBalance extends Command<Network> {
 	@Override
 	protected final void execute() throws CommandException {
         _display.popup(Message.globalPaymentsAndDebts (
-			Math.round(_receiver.getPayments()),
-			Math.round(_receiver.getDebts())
+			Money.round(_receiver.getPayments()),
+			Money.round(_receiver.getDebts())
 		));
 	}
 }
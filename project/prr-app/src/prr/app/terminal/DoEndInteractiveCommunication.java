@@ -1,6 +1,7 @@
 package prr.app.terminal;
 
 import prr.Network;
+import prr.clients.Money;
 import prr.terminals.Terminal;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -17,7 +18,7 @@ class DoEndInteractiveCommunication extends TerminalCommand {
 
 	@Override
 	protected final void execute() throws CommandException {
-		_display.popup(Message.communicationCost(Math.round
+		_display.popup(Message.communicationCost(Money.round
 							(_receiver.endInteractiveCommunication
 							  (_network, integerField("duration")))));
 	}
@@ -1,6 +1,7 @@
 package prr.app.terminal;
 
 import prr.Network;
+import prr.clients.Money;
 import prr.terminals.Terminal;
 import pt.tecnico.uilib.menus.CommandException;
 
@@ -18,8 +19,8 @@ class DoShowTerminalBalance extends TerminalCommand {
     _display.popup(
       Message.terminalPaymentsAndDebts(
         _receiver.getKey(),
-        Math.round(_receiver.getPayments()),
-        Math.round(_receiver.getDebts())
+        Money.round(_receiver.getPayments()),
+        Money.round(_receiver.getDebts())
       )
     );
   }
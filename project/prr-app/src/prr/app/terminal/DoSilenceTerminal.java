@@ -16,7 +16,7 @@ class DoSilenceTerminal extends TerminalCommand {
 	@Override
 	protected final void execute() throws CommandException {
         try {
-			_receiver.silence();
+			_receiver.silence(_network);
 		} catch (prr.exceptions.TerminalStateAlreadySilent e) {
 			_display.popup(Message.alreadySilent());
 		}
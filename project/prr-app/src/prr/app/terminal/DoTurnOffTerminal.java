@@ -16,7 +16,7 @@ class DoTurnOffTerminal extends TerminalCommand {
 	@Override
 	protected final void execute() throws CommandException {
         try {
-			_receiver.turnOff();
+			_receiver.turnOff(_network);
 		} catch (prr.exceptions.TerminalStateAlreadyOff e) {
 			_display.popup(Message.alreadyOff());
 		}
@@ -16,7 +16,7 @@ class DoTurnOnTerminal extends TerminalCommand {
 	@Override
 	protected final void execute() throws CommandException {
         try {
-			_receiver.turnOn();
+			_receiver.turnOn(_network);
 		} catch (prr.exceptions.TerminalStateAlreadyOn e) {
 			_display.popup(Message.alreadyOn());
 		}
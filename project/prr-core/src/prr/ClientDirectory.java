@@ -0,0 +1,132 @@
+package prr;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+
+import prr.clients.Client;
+
+
+/**
+ * Directory of the clients of a network, by key.
+ *
+ * Client keys are case insensitive, so clients are kept in a hash table
+ * by their folded key (the key with each character folded the way
+ * String.CASE_INSENSITIVE_ORDER compares it), which is computed once per
+ * lookup instead of at every comparison. The clients are iterated in the
+ * order of String.CASE_INSENSITIVE_ORDER, through a sorted array which is
+ * only rebuilt after clients have been added, and which is also split
+ * by parallel streams.
+ */
+class ClientDirectory extends AbstractCollection<Client> {
+
+	/** The clients, by folded key. */
+	private final Map<String, Client> _clients = new HashMap<String, Client>();
+
+	/** The clients in the order of their keys, or null if outdated. */
+	private Client[] _sorted;
+
+	/**
+	 * Fold a key, so keys which are equal for
+	 * String.CASE_INSENSITIVE_ORDER have the same folded key.
+	 *
+	 * @param key the key
+	 * @return the folded key
+	 */
+	static String fold(String key) {
+		int i = 0;
+		while (i < key.length()) {
+			char c = key.charAt(i);
+			if (c >= 0x80 || (c >= 'A' && c <= 'Z')) {
+				break;
+			}
+			i++;
+		}
+		if (i == key.length()) {
+			return key;
+		}
+
+		StringBuilder folded = new StringBuilder(key.length());
+		folded.append(key, 0, i);
+		while (i < key.length()) {
+			int codePoint = key.codePointAt(i);
+			folded.appendCodePoint(Character.toLowerCase(
+							Character.toUpperCase(codePoint)));
+			i += Character.charCount(codePoint);
+		}
+		return folded.toString();
+	}
+
+	/**
+	 * @param key the key of a client, in any case
+	 * @return the client with the key, or null if there is none
+	 */
+	Client get(String key) {
+		return _clients.get(fold(key));
+	}
+
+	/**
+	 * @param key the key of a client, in any case
+	 * @return true if there is a client with the key
+	 */
+	boolean containsKey(String key) {
+		return _clients.containsKey(fold(key));
+	}
+
+	/**
+	 * Add a client, replacing the one with the same key, if any.
+	 *
+	 * @param client the client
+	 */
+	void put(Client client) {
+		_clients.put(fold(client.getKey()), client);
+		_sorted = null;
+	}
+
+	/**
+	 * @return the clients, in no particular order
+	 */
+	Collection<Client> unordered() {
+		return Collections.unmodifiableCollection(_clients.values());
+	}
+
+	@Override
+	public int size() {
+		return _clients.size();
+	}
+
+	/**
+	 * Iterate over the clients in the order of their keys.
+	 */
+	@Override
+	public Iterator<Client> iterator() {
+		return Collections.unmodifiableList(Arrays.asList(sorted())).iterator();
+	}
+
+	/**
+	 * Split the clients in the order of their keys.
+	 */
+	@Override
+	public Spliterator<Client> spliterator() {
+		return Arrays.spliterator(sorted());
+	}
+
+	/**
+	 * @return the clients in the order of their keys
+	 */
+	private Client[] sorted() {
+		if (_sorted == null) {
+			Client[] sorted = _clients.values().toArray(new Client[0]);
+			Arrays.sort(sorted, (client1, client2) -> String
+							.CASE_INSENSITIVE_ORDER.compare(client1.getKey(),
+															client2.getKey()));
+			_sorted = sorted;
+		}
+		return _sorted;
+	}
+}
@@ -0,0 +1,436 @@
+package prr;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import prr.communications.Communication;
+import prr.communications.CommunicationColumns;
+import prr.terminals.Terminal;
+
+
+/**
+ * The communications of a network, kept in tables of columns (see
+ * CommunicationColumns).
+ *
+ * The communications which were complete when the network was saved are
+ * left in the snapshot, in segments of consecutive keys, and a segment is
+ * only read when one of its communications is needed. A bounded number
+ * of segments is cached (-Dcommunications.cache, 64 by default). The
+ * communications created since then, or in progress, are kept in memory,
+ * and so are the segments with communications which have been changed,
+ * since reading them again would lose their changes.
+ *
+ * Segments may be read by several threads at once, while the
+ * communications are scanned in parallel (but the communications must
+ * not be changed meanwhile).
+ *
+ * The snapshot is read through a channel opened when the network is
+ * loaded. Snapshots are replaced by renaming a new file over them, so the
+ * channel still reads the file as it was loaded.
+ */
+class CommunicationStore extends AbstractCollection<Communication> {
+
+	/** Number of communications in a segment of a snapshot. */
+	static final int SEGMENT_SIZE = 1024;
+
+	/** Maximum number of segments kept in memory. */
+	private static final int CACHE_SEGMENTS =
+					 Integer.getInteger("communications.cache", 64);
+
+	/** Ids of the terminals of the communications. */
+	private final CommunicationColumns.Terminals _terminalIds;
+
+	/** The communications in memory. */
+	private final CommunicationColumns _resident;
+
+	/** The segments with communications which have been changed. */
+	private final Map<Integer, CommunicationColumns> _changed =
+					 new HashMap<Integer, CommunicationColumns>();
+
+	/** The snapshot with the segments, or null if there are none. */
+	private FileChannel _channel;
+
+	/** Version of the format of the snapshot. */
+	private int _version;
+
+	/** Key of the first communication of each segment. */
+	private int[] _firstKeys = new int[0];
+
+	/** Number of communications of each segment. */
+	private int[] _counts = new int[0];
+
+	/** Offset of each segment in the snapshot. */
+	private long[] _offsets = new long[0];
+
+	/** Length in bytes of each segment. */
+	private int[] _lengths = new int[0];
+
+	/** The terminals of the snapshot, by id. */
+	private Terminal[] _terminals = new Terminal[0];
+
+	/** The segments which have been read, least recently used first. */
+	private final Map<Integer, CommunicationColumns> _cache =
+					 new LinkedHashMap<Integer, CommunicationColumns>(16, 0.75f,
+																	  true) {
+		@Override
+		protected boolean removeEldestEntry(
+						Map.Entry<Integer, CommunicationColumns> eldest) {
+			return size() > CACHE_SEGMENTS;
+		}
+	};
+
+	/** Total number of communications in the segments. */
+	private int _segmentsSize = 0;
+
+	CommunicationStore() {
+		_terminalIds = new CommunicationColumns.Terminals();
+		_resident = new CommunicationColumns(_terminalIds, 16);
+	}
+
+	/**
+	 * Copy the communications of a store as they are now.
+	 */
+	private CommunicationStore(CommunicationStore store) {
+		_terminalIds = new CommunicationColumns.Terminals(store._terminalIds);
+		_resident = store._resident.copy(_terminalIds);
+		synchronized (store._cache) {
+			for (Map.Entry<Integer, CommunicationColumns> changed
+					: store._changed.entrySet()) {
+				_changed.put(changed.getKey(),
+							 changed.getValue().copy(_terminalIds));
+			}
+			_channel = store._channel;
+		}
+		_version = store._version;
+		_firstKeys = store._firstKeys;
+		_counts = store._counts;
+		_offsets = store._offsets;
+		_lengths = store._lengths;
+		_terminals = store._terminals;
+		_segmentsSize = store._segmentsSize;
+	}
+
+	/**
+	 * Take a view of the communications as they are now, which later
+	 * changes to the store do not change, so it can be read by another
+	 * thread while the store goes on being changed. The tables in memory
+	 * are copied (but not their messages), and the segments which have
+	 * not been changed are read from the snapshot by the view itself.
+	 * The view must not be changed, nor closed: it reads the snapshot
+	 * of the store, which must stay open while the view is read.
+	 *
+	 * @return the view
+	 */
+	CommunicationStore view() {
+		return new CommunicationStore(this);
+	}
+
+	/**
+	 * Attach the segments of a snapshot. The store takes ownership of
+	 * the channel.
+	 *
+	 * @param channel   the snapshot
+	 * @param version   the version of the format of the snapshot
+	 * @param firstKeys the key of the first communication of each segment
+	 * @param counts    the number of communications of each segment
+	 * @param offsets   the offset of each segment in the snapshot
+	 * @param lengths   the length in bytes of each segment
+	 * @param terminals the terminals of the snapshot, by id
+	 */
+	void attach(FileChannel channel, int version, int[] firstKeys,
+			int[] counts, long[] offsets, int[] lengths, Terminal[] terminals) {
+		close();
+		_channel = channel;
+		_version = version;
+		_firstKeys = firstKeys;
+		_counts = counts;
+		_offsets = offsets;
+		_lengths = lengths;
+		_terminals = terminals;
+		// segments read in parallel must not add terminals to the ids
+		for (Terminal terminal : terminals) {
+			_terminalIds.idOf(terminal);
+		}
+		_segmentsSize = 0;
+		for (int count : counts) {
+			_segmentsSize += count;
+		}
+	}
+
+	/**
+	 * @return the table of the communications kept in memory, where new
+	 *         communications are added
+	 */
+	CommunicationColumns getColumns() {
+		return _resident;
+	}
+
+	/**
+	 * Keep a communication which has been changed in memory. It must be
+	 * called right after the change. The table of the communication is
+	 * kept, even if its segment has been evicted from the cache since the
+	 * communication was read; if another copy of the segment is already
+	 * kept, the change is copied there.
+	 *
+	 * @param communication the communication
+	 */
+	void keep(Communication communication) {
+		CommunicationColumns columns = communication.getColumns();
+		if (columns == _resident) {
+			return;
+		}
+		int segment = segmentOf(communication.getKey());
+		CommunicationColumns kept;
+		synchronized (_cache) {
+			kept = _changed.putIfAbsent(segment, columns);
+		}
+		if (kept != null && kept != columns) {
+			Communication copy = kept.get(kept.rowOf(communication.getKey()));
+			copy.setCost(communication.getCost());
+			copy.setPaid(communication.getPaid());
+			copy.setInProgress(communication.getInProgress());
+		}
+	}
+
+	/**
+	 * @param key the key of a communication
+	 * @return the communication with the key, or null if there is none
+	 */
+	Communication get(int key) {
+		int row = _resident.rowOf(key);
+		if (row >= 0) {
+			return _resident.get(row);
+		}
+
+		int segment = segmentOf(key);
+		if (segment < 0) {
+			return null;
+		}
+		CommunicationColumns columns = segment(segment);
+		row = columns.rowOf(key);
+		return row < 0 ? null : columns.get(row);
+	}
+
+	/**
+	 * @return the communications in progress, by key (they are always
+	 *         kept in memory)
+	 */
+	List<Communication> inProgress() {
+		List<Communication> communications = new ArrayList<Communication>();
+		for (int row = 0; row < _resident.size(); row++) {
+			if (_resident.getInProgress(row)) {
+				communications.add(_resident.get(row));
+			}
+		}
+		return communications;
+	}
+
+	@Override
+	public int size() {
+		return _resident.size() + _segmentsSize;
+	}
+
+	/**
+	 * Iterate over the communications in the order of their keys.
+	 */
+	@Override
+	public Iterator<Communication> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * Split the communications in the order of their keys. The parts
+	 * which are split are the segments, with the communications in
+	 * memory whose keys are in their range, so each part can be read
+	 * by a different thread.
+	 */
+	@Override
+	public Spliterator<Communication> spliterator() {
+		return new Parts(0, _firstKeys.length + 1);
+	}
+
+	/**
+	 * Spliterator over a range of parts of the communications. Part 0
+	 * has the communications in memory before the first segment, and
+	 * part i + 1 has segment i and the communications in memory up to
+	 * the next segment.
+	 */
+	private class Parts implements Spliterator<Communication> {
+
+		/** The next part. */
+		private int _part;
+
+		/** The end of the range of parts. */
+		private final int _end;
+
+		/** The communications of the part being read, or null. */
+		private Iterator<Communication> _current;
+
+		Parts(int part, int end) {
+			_part = part;
+			_end = end;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Communication> action) {
+			while (_current == null || !_current.hasNext()) {
+				if (_part == _end) {
+					return false;
+				}
+				_current = part(_part++);
+			}
+			action.accept(_current.next());
+			return true;
+		}
+
+		@Override
+		public Spliterator<Communication> trySplit() {
+			if (_current != null && _current.hasNext()) {
+				return null;
+			}
+			int middle = (_part + _end) >>> 1;
+			if (middle == _part) {
+				return null;
+			}
+			Parts prefix = new Parts(_part, middle);
+			_part = middle;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return (long) (_end - _part) * SEGMENT_SIZE;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+	/**
+	 * @return the communications of a part, in the order of their keys
+	 */
+	private Iterator<Communication> part(int part) {
+		CommunicationColumns columns = part == 0 ? null : segment(part - 1);
+		int row = part == 0 ? 0 : _resident.ceilingRow(_firstKeys[part - 1]);
+		int end = part == _firstKeys.length ? _resident.size()
+						: _resident.ceilingRow(_firstKeys[part]);
+
+		return new Iterator<Communication>() {
+			private int _row = row;
+			private int _index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return _row < end ||
+					   (columns != null && _index < columns.size());
+			}
+
+			@Override
+			public Communication next() {
+				boolean inSegment = columns != null && _index < columns.size();
+				if (_row < end && (!inSegment ||
+						_resident.getKey(_row) < columns.getKey(_index))) {
+					return _resident.get(_row++);
+				}
+				if (!inSegment) {
+					throw new NoSuchElementException();
+				}
+				return columns.get(_index++);
+			}
+		};
+	}
+
+	/**
+	 * Close the snapshot. The segments can no longer be read.
+	 */
+	void close() {
+		if (_channel != null) {
+			try {
+				_channel.close();
+			} catch (IOException e) {
+				// nothing more to read from it
+			}
+			_channel = null;
+		}
+	}
+
+	/**
+	 * @return the index of the segment which may have the communication
+	 *         with the given key, or -1
+	 */
+	private int segmentOf(int key) {
+		int segment = Arrays.binarySearch(_firstKeys, key);
+		return segment >= 0 ? segment : -segment - 2;
+	}
+
+	/**
+	 * Get the communications of a segment, reading it if it is not
+	 * in memory.
+	 *
+	 * @param segment the index of the segment
+	 * @return the communications of the segment
+	 */
+	private CommunicationColumns segment(int segment) {
+		CommunicationColumns columns;
+		FileChannel channel;
+		synchronized (_cache) {
+			columns = _changed.get(segment);
+			if (columns == null) {
+				columns = _cache.get(segment);
+			}
+			if (columns != null) {
+				return columns;
+			}
+			channel = _channel;
+		}
+		if (channel == null) {
+			throw new IllegalStateException("communications are closed");
+		}
+
+		// read without holding the lock, so segments are read in parallel
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(_lengths[segment]);
+			long position = _offsets[segment];
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position + buffer.position());
+				if (read < 0) {
+					throw new EOFException();
+				}
+			}
+
+			DataInputStream in = new DataInputStream(
+							new ByteArrayInputStream(buffer.array()));
+			columns = new CommunicationColumns(_terminalIds, _counts[segment]);
+			for (int i = 0; i < _counts[segment]; i++) {
+				SnapshotCodec.readCommunication(in, _version, columns,
+												id -> _terminals[id]);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		synchronized (_cache) {
+			CommunicationColumns read = _cache.putIfAbsent(segment, columns);
+			return read == null ? columns : read;
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package prr;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import prr.clients.Client;
+
+
+/**
+ * Index of the clients of a network by their debts.
+ *
+ * The clients with debts are kept sorted by decreasing debts (and then
+ * by key), and the others by key, so they can be listed without going
+ * through every client. Since the order depends on the debts, the index
+ * remembers the debts each client was indexed with, and it must be
+ * updated every time the debts of a client change.
+ */
+class DebtIndex {
+
+	/**
+	 * A client with debts, as indexed.
+	 */
+	private static class Entry implements Comparable<Entry> {
+
+		/** The debts of the client when it was indexed. */
+		private final long _debts;
+
+		/** The client, or null for a bound of a range of debts. */
+		private final Client _client;
+
+		Entry(long debts, Client client) {
+			_debts = debts;
+			_client = client;
+		}
+
+		/**
+		 * Larger debts come first and then the keys in order. A bound
+		 * comes before the clients with the same debts.
+		 */
+		@Override
+		public int compareTo(Entry other) {
+			int order = Long.compare(other._debts, _debts);
+			if (order != 0 || _client == other._client) {
+				return order;
+			}
+			if (_client == null || other._client == null) {
+				return _client == null ? -1 : 1;
+			}
+			return String.CASE_INSENSITIVE_ORDER.compare(_client.getKey(),
+							other._client.getKey());
+		}
+	}
+
+	/** The clients with debts, by decreasing debts. */
+	private final NavigableSet<Entry> _withDebts = new TreeSet<Entry>();
+
+	/** The clients without debts, by key. */
+	private final Map<String, Client> _withoutDebts =
+					new TreeMap<String, Client>(String.CASE_INSENSITIVE_ORDER);
+
+	/** The entry of each client with debts. */
+	private final Map<Client, Entry> _entries = new HashMap<Client, Entry>();
+
+	/**
+	 * Index a client with its current debts, replacing the entry it had,
+	 * if any.
+	 *
+	 * @param client the client
+	 */
+	void update(Client client) {
+		Entry entry = _entries.remove(client);
+		if (entry != null) {
+			_withDebts.remove(entry);
+		}
+		if (client.hasDebts()) {
+			entry = new Entry(client.getDebts(), client);
+			_withDebts.add(entry);
+			_entries.put(client, entry);
+			_withoutDebts.remove(client.getKey());
+		} else {
+			_withoutDebts.put(client.getKey(), client);
+		}
+	}
+
+	/**
+	 * @return the clients with debts, by decreasing debts
+	 */
+	Collection<Client> withDebts() {
+		return clients(_withDebts);
+	}
+
+	/**
+	 * @return the clients without debts, by key
+	 */
+	Collection<Client> withoutDebts() {
+		return Collections.unmodifiableCollection(_withoutDebts.values());
+	}
+
+	/**
+	 * @param count the maximum number of clients
+	 * @return the clients with the largest debts, by decreasing debts
+	 */
+	List<Client> top(int count) {
+		List<Client> clients = new ArrayList<Client>(
+						Math.min(Math.max(count, 0), _withDebts.size()));
+		for (Entry entry : _withDebts) {
+			if (clients.size() >= count) {
+				break;
+			}
+			clients.add(entry._client);
+		}
+		return clients;
+	}
+
+	/**
+	 * @param amount an amount of Money
+	 * @return the clients with debts larger than the amount, by
+	 *         decreasing debts
+	 */
+	Collection<Client> above(long amount) {
+		return clients(_withDebts.headSet(new Entry(amount, null), false));
+	}
+
+	/**
+	 * @return a view of the clients of some entries
+	 */
+	private static Collection<Client> clients(Collection<Entry> entries) {
+		return new AbstractCollection<Client>() {
+			@Override
+			public int size() {
+				return entries.size();
+			}
+
+			@Override
+			public Iterator<Client> iterator() {
+				Iterator<Entry> iterator = entries.iterator();
+				return new Iterator<Client>() {
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Client next() {
+						return iterator.next()._client;
+					}
+				};
+			}
+
+			@Override
+			public Spliterator<Client> spliterator() {
+				return Spliterators.spliterator(this, Spliterator.ORDERED);
+			}
+		};
+	}
+}
@@ -0,0 +1,812 @@
+package prr;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import prr.clients.Client;
+import prr.terminals.BasicTerminal;
+import prr.terminals.FancyTerminal;
+import prr.terminals.Terminal;
+import prr.exceptions.UnrecognizedEntryException;
+import prr.exceptions.DuplicateClientKeyException;
+import prr.exceptions.UnknownClientKeyException;
+import prr.exceptions.UnknownTerminalKeyException;
+import prr.exceptions.InvalidTerminalKeyException;
+import prr.exceptions.DuplicateTerminalKeyException;
+
+
+/**
+ * Multi-phase import of a text input file into a network.
+ *
+ * The file is read in blocks of whole lines, which are parsed in
+ * parallel and bucketed by kind of entry. The entries are then validated
+ * in parallel, phase by phase, so that entries may refer to clients and
+ * terminals that only appear later in the file: first the clients, then
+ * the terminals and finally the friends. The network is only changed
+ * after every entry has been validated, and the entities of each phase
+ * are then added to it in bulk, in the order of the file.
+ */
+class ImportPipeline {
+
+	/** Number of characters (or bytes) per block of the file. */
+	private static final int BLOCK_SIZE = 1 << 20;
+
+	/** Maximum number of bytes of a memory-mapped region of the file. */
+	private static final int REGION_SIZE = 1 << 30;
+
+	/** Number of blocks parsed in parallel at a time. */
+	private static final int WINDOW_SIZE =
+					 2 * Runtime.getRuntime().availableProcessors();
+
+	/** Known values of the state field of terminal entries. */
+	private static final String[] TERMINAL_STATES =
+					 { "ON", "OFF", "SILENCE", "BUSY" };
+
+	/**
+	 * Outcome of the validation of an entry, with the type of the
+	 * exception which rejects it.
+	 */
+	enum Status {
+		OK(null),
+		UNRECOGNIZED_ENTRY(UnrecognizedEntryException.class),
+		DUPLICATE_CLIENT_KEY(DuplicateClientKeyException.class),
+		UNKNOWN_CLIENT_KEY(UnknownClientKeyException.class),
+		INVALID_TERMINAL_KEY(InvalidTerminalKeyException.class),
+		DUPLICATE_TERMINAL_KEY(DuplicateTerminalKeyException.class),
+		UNKNOWN_TERMINAL_KEY(UnknownTerminalKeyException.class);
+
+		/** Type of the exception which rejects the entry. */
+		private final Class<? extends Exception> _type;
+
+		Status(Class<? extends Exception> type) {
+			_type = type;
+		}
+
+		/**
+		 * @return the type of the exception which rejects the entry
+		 */
+		Class<? extends Exception> getType() {
+			return _type;
+		}
+	}
+
+	/**
+	 * An entry of the import file.
+	 */
+	abstract static class Entry {
+
+		/** Number of the line of the entry in the file. */
+		int _line;
+
+		/** Outcome of the validation of the entry. */
+		Status _status = Status.OK;
+
+		/** Key which caused the entry to be rejected. */
+		String _culprit;
+
+		/**
+		 * @param line the number of the line of the entry in its block
+		 */
+		Entry(int line) {
+			_line = line;
+		}
+
+		/**
+		 * Reject the entry.
+		 *
+		 * @param status  the reason why the entry is rejected
+		 * @param culprit the key which caused the entry to be rejected
+		 */
+		void reject(Status status, String culprit) {
+			_status = status;
+			_culprit = culprit;
+		}
+
+		/**
+		 * @return true if the entry has been validated successfully
+		 */
+		boolean isValid() {
+			return _status == Status.OK;
+		}
+
+		/**
+		 * @return the text of the entry, as it appears in the file
+		 */
+		abstract String getText();
+
+		/**
+		 * @return the exception corresponding to the rejection of the entry
+		 */
+		Exception toException() {
+			return switch (_status) {
+				case OK -> null;
+				case UNRECOGNIZED_ENTRY ->
+						new UnrecognizedEntryException(getText());
+				case DUPLICATE_CLIENT_KEY ->
+						new DuplicateClientKeyException(_culprit);
+				case UNKNOWN_CLIENT_KEY ->
+						new UnknownClientKeyException(_culprit);
+				case INVALID_TERMINAL_KEY ->
+						new InvalidTerminalKeyException(_culprit);
+				case DUPLICATE_TERMINAL_KEY ->
+						new DuplicateTerminalKeyException(_culprit);
+				case UNKNOWN_TERMINAL_KEY ->
+						new UnknownTerminalKeyException(_culprit);
+			};
+		}
+	}
+
+	/**
+	 * An entry which is not recognized.
+	 */
+	static class UnrecognizedEntry extends Entry {
+		private final String _text;
+
+		UnrecognizedEntry(int line, String text) {
+			super(line);
+			_text = text;
+			reject(Status.UNRECOGNIZED_ENTRY, null);
+		}
+
+		@Override
+		String getText() {
+			return _text;
+		}
+	}
+
+	/**
+	 * A CLIENT entry.
+	 */
+	static class ClientEntry extends Entry {
+		final String _key;
+		final String _name;
+		final String _taxId;
+
+		ClientEntry(int line, String key, String name, String taxId) {
+			super(line);
+			_key = key;
+			_name = name;
+			_taxId = taxId;
+		}
+
+		@Override
+		String getText() {
+			return String.join("|", "CLIENT", _key, _name, _taxId);
+		}
+	}
+
+	/**
+	 * A BASIC or FANCY entry.
+	 */
+	static class TerminalEntry extends Entry {
+		final String _type;
+		final String _key;
+		final String _clientKey;
+		final String _state;
+
+		TerminalEntry(int line, String type, String key, String clientKey,
+					  String state) {
+			super(line);
+			_type = type;
+			_key = key;
+			_clientKey = clientKey;
+			_state = state;
+		}
+
+		@Override
+		String getText() {
+			return String.join("|", _type, _key, _clientKey, _state);
+		}
+	}
+
+	/**
+	 * A FRIENDS entry.
+	 */
+	static class FriendsEntry extends Entry {
+		final String _key;
+		final String[] _friends;
+
+		FriendsEntry(int line, String key, String[] friends) {
+			super(line);
+			_key = key;
+			_friends = friends;
+		}
+
+		@Override
+		String getText() {
+			return "FRIENDS|" + _key + "|" + String.join(",", _friends);
+		}
+	}
+
+	/**
+	 * Entries of a block of the file, bucketed by kind.
+	 */
+	private static class Batch {
+		final List<Entry> _unrecognized = new ArrayList<Entry>();
+		final List<ClientEntry> _clients = new ArrayList<ClientEntry>();
+		final List<TerminalEntry> _terminals = new ArrayList<TerminalEntry>();
+		final List<FriendsEntry> _friends = new ArrayList<FriendsEntry>();
+		int _lines = 0;
+	}
+
+	/** The network into which the file is imported. */
+	private final Network _network;
+
+	/** All the entries of the file, bucketed by kind. */
+	private final Batch _entries = new Batch();
+
+	/** Keys of the clients being imported, case-folded, with their lines. */
+	private final Map<String, Integer> _clientKeys =
+					new ConcurrentHashMap<String, Integer>();
+
+	/** Keys of the terminals being imported, with their lines. */
+	private final Map<String, Integer> _terminalKeys =
+					new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * @param network the network into which the file is imported
+	 */
+	ImportPipeline(Network network) {
+		_network = network;
+	}
+
+	/**
+	 * Import the entries read from the given reader. Without a report,
+	 * the import fails with the first rejected entry of the file, if
+	 * any, and the network is left unchanged. With a report, every valid
+	 * entry is imported and the rejected ones are recorded in the report.
+	 *
+	 * @param reader the reader of the text input file
+	 * @param report the report of the rejected entries, or null
+	 * @throws IOException if there is an IO error while reading
+	 * @throws UnrecognizedEntryException    if some entry is not correct
+	 * @throws DuplicateClientKeyException   if a client key is already
+	 *										 being used
+	 * @throws UnknownClientKeyException     if there is no client with
+	 *										 the key given for a terminal
+	 * @throws InvalidTerminalKeyException   if a terminal key doesn't
+	 *										 have the correct format
+	 * @throws DuplicateTerminalKeyException if a terminal key is already
+	 *										 being used
+	 * @throws UnknownTerminalKeyException   if there is no terminal with
+	 *										 one of the keys given for
+	 *										 friends
+	 */
+	void run(Reader reader, ImportReport report)
+			throws IOException, UnrecognizedEntryException,
+			DuplicateClientKeyException, UnknownClientKeyException,
+			InvalidTerminalKeyException, DuplicateTerminalKeyException,
+			UnknownTerminalKeyException {
+
+		parse(reader);
+		complete(report);
+	}
+
+	/**
+	 * Import the entries of a file which is memory-mapped and parsed
+	 * in place. Without a report, the import fails with the first
+	 * rejected entry of the file, if any, and the network is left
+	 * unchanged. With a report, every valid entry is imported and the
+	 * rejected ones are recorded in the report.
+	 *
+	 * @param channel the channel of the text input file
+	 * @param charset the charset of the text input file
+	 * @param report  the report of the rejected entries, or null
+	 * @throws IOException if there is an IO error while mapping the file
+	 * @throws UnrecognizedEntryException    if some entry is not correct
+	 * @throws DuplicateClientKeyException   if a client key is already
+	 *										 being used
+	 * @throws UnknownClientKeyException     if there is no client with
+	 *										 the key given for a terminal
+	 * @throws InvalidTerminalKeyException   if a terminal key doesn't
+	 *										 have the correct format
+	 * @throws DuplicateTerminalKeyException if a terminal key is already
+	 *										 being used
+	 * @throws UnknownTerminalKeyException   if there is no terminal with
+	 *										 one of the keys given for
+	 *										 friends
+	 */
+	void run(FileChannel channel, Charset charset, ImportReport report)
+			throws IOException, UnrecognizedEntryException,
+			DuplicateClientKeyException, UnknownClientKeyException,
+			InvalidTerminalKeyException, DuplicateTerminalKeyException,
+			UnknownTerminalKeyException {
+
+		parse(channel, charset);
+		complete(report);
+	}
+
+	/**
+	 * Check if the files in a charset can be parsed directly as bytes:
+	 * the separators must be encoded as single ASCII bytes, which can
+	 * never be part of the encoding of other characters.
+	 *
+	 * @param charset the charset of the text input file
+	 * @return true if the bytes of the file can be parsed in place
+	 */
+	static boolean canParseBytes(Charset charset) {
+		String separators = "|,\r\n";
+		return (charset.equals(StandardCharsets.UTF_8) ||
+				charset.newEncoder().maxBytesPerChar() == 1) &&
+				Arrays.equals(separators.getBytes(charset),
+							  separators.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Validate the parsed entries and add the valid ones to the network.
+	 * Without a report, nothing is added if some entry is rejected.
+	 *
+	 * @param report the report of the rejected entries, or null
+	 */
+	private void complete(ImportReport report)
+			throws UnrecognizedEntryException, DuplicateClientKeyException,
+			UnknownClientKeyException, InvalidTerminalKeyException,
+			DuplicateTerminalKeyException, UnknownTerminalKeyException {
+
+		validate();
+
+		if (report == null) {
+			Entry rejected = firstRejected();
+			if (rejected != null) {
+				throwException(rejected.toException());
+			}
+		} else {
+			for (Entry rejected : allRejected()) {
+				report.reject(rejected._line, rejected.getText(),
+							  rejected._status.getType());
+			}
+		}
+
+		int imported = apply();
+		if (report != null) {
+			report.setImported(imported);
+		}
+	}
+
+	/**
+	 * Throw one of the exceptions which can reject an entry.
+	 *
+	 * @param exception the exception to throw
+	 */
+	private static void throwException(Exception exception)
+			throws UnrecognizedEntryException, DuplicateClientKeyException,
+			UnknownClientKeyException, InvalidTerminalKeyException,
+			DuplicateTerminalKeyException, UnknownTerminalKeyException {
+
+		if (exception instanceof UnrecognizedEntryException e) {
+			throw e;
+		} else if (exception instanceof DuplicateClientKeyException e) {
+			throw e;
+		} else if (exception instanceof UnknownClientKeyException e) {
+			throw e;
+		} else if (exception instanceof InvalidTerminalKeyException e) {
+			throw e;
+		} else if (exception instanceof DuplicateTerminalKeyException e) {
+			throw e;
+		} else if (exception instanceof UnknownTerminalKeyException e) {
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the rejected entry which appears first in the file, or
+	 *         null if every entry is valid
+	 */
+	Entry firstRejected() {
+		return allEntries()
+				.parallelStream()
+				.filter(entry -> !entry.isValid())
+				.min((entry1, entry2) -> entry1._line - entry2._line)
+				.orElse(null);
+	}
+
+	/**
+	 * @return the rejected entries, in the order of the file
+	 */
+	List<Entry> allRejected() {
+		return allEntries()
+				.parallelStream()
+				.filter(entry -> !entry.isValid())
+				.sorted((entry1, entry2) -> entry1._line - entry2._line)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @return all the entries of the file, bucketed by kind
+	 */
+	List<Entry> allEntries() {
+		List<Entry> entries = new ArrayList<Entry>(_entries._unrecognized);
+		entries.addAll(_entries._clients);
+		entries.addAll(_entries._terminals);
+		entries.addAll(_entries._friends);
+		return entries;
+	}
+
+	/**
+	 * Read the file in blocks of whole lines and parse them in parallel.
+	 *
+	 * @param reader the reader of the text input file
+	 * @throws IOException if there is an IO error while reading
+	 */
+	void parse(Reader reader) throws IOException {
+		List<ImportTokenizer> window = new ArrayList<ImportTokenizer>();
+		char[] carry = new char[0];
+		int carryLength = 0;
+		boolean eof = false;
+
+		while (!eof) {
+			char[] block = new char[Math.max(BLOCK_SIZE, 2 * carryLength)];
+			System.arraycopy(carry, 0, block, 0, carryLength);
+			int length = carryLength;
+
+			int read;
+			while (length < block.length &&
+					(read = reader.read(block, length, block.length - length)) >= 0) {
+				length += read;
+			}
+			eof = length < block.length;
+
+			int end = length;
+			if (!eof) {
+				while (end > 0 && block[end - 1] != '\n') {
+					end--;
+				}
+			}
+
+			if (end == 0 && !eof) {
+				/* a line longer than the block: keep reading it */
+				carry = block;
+				carryLength = length;
+				continue;
+			}
+
+			carryLength = length - end;
+			carry = Arrays.copyOfRange(block, end, length);
+			window.add(new ImportTokenizer.Chars(block, end));
+
+			if (window.size() == WINDOW_SIZE || eof) {
+				parseWindow(window);
+				window.clear();
+			}
+		}
+	}
+
+	/**
+	 * Map the file in regions and parse their blocks of whole lines in
+	 * parallel, directly from the mapped bytes.
+	 *
+	 * @param channel the channel of the text input file
+	 * @param charset the charset of the text input file
+	 * @throws IOException if there is an IO error while mapping the file
+	 */
+	void parse(FileChannel channel, Charset charset) throws IOException {
+		long size = channel.size();
+		long position = 0;
+
+		while (position < size) {
+			int length = (int) Math.min(REGION_SIZE, size - position);
+			MappedByteBuffer region =
+					channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			boolean last = position + length == size;
+
+			int end = last ? length : lastLineEnd(region, 0, length);
+			if (end == 0) {
+				throw new IOException("Line longer than " + REGION_SIZE +
+									  " bytes at offset " + position);
+			}
+
+			List<ImportTokenizer> window = new ArrayList<ImportTokenizer>();
+			int start = 0;
+			while (start < end) {
+				int blockEnd = start + BLOCK_SIZE >= end ? end
+						: lastLineEnd(region, start, start + BLOCK_SIZE);
+				if (blockEnd == start) {
+					/* a line longer than the block: take it whole */
+					blockEnd = nextLineEnd(region, start + BLOCK_SIZE, end);
+				}
+				ByteBuffer block = region.slice(start, blockEnd - start);
+				window.add(new ImportTokenizer.Bytes(block, charset));
+				start = blockEnd;
+
+				if (window.size() == WINDOW_SIZE || start == end) {
+					parseWindow(window);
+					window.clear();
+				}
+			}
+			position += end;
+		}
+	}
+
+	/**
+	 * @param buffer the bytes of a region of the file
+	 * @param start  the position where the search stops
+	 * @param end    the position where the search starts
+	 * @return the position after the last line terminator before the
+	 *         given end, or start if there is none
+	 */
+	private static int lastLineEnd(ByteBuffer buffer, int start, int end) {
+		while (end > start && buffer.get(end - 1) != '\n') {
+			end--;
+		}
+		return end;
+	}
+
+	/**
+	 * @param buffer the bytes of a region of the file
+	 * @param start  the position where the search starts
+	 * @param end    the position where the search stops
+	 * @return the position after the first line terminator after the
+	 *         given start, or end if there is none
+	 */
+	private static int nextLineEnd(ByteBuffer buffer, int start, int end) {
+		while (start < end && buffer.get(start++) != '\n') {
+			/* keep searching */
+		}
+		return start;
+	}
+
+	/**
+	 * Parse a window of blocks in parallel and add their entries to the
+	 * buckets, in the order of the file.
+	 *
+	 * @param blocks the tokenizers of the blocks of the window
+	 */
+	private void parseWindow(List<ImportTokenizer> blocks) {
+		List<Batch> batches = blocks
+				.parallelStream()
+				.map(ImportPipeline::parseBlock)
+				.collect(Collectors.toList());
+
+		for (Batch batch : batches) {
+			int base = _entries._lines;
+			append(_entries._unrecognized, batch._unrecognized, base);
+			append(_entries._clients, batch._clients, base);
+			append(_entries._terminals, batch._terminals, base);
+			append(_entries._friends, batch._friends, base);
+			_entries._lines += batch._lines;
+		}
+	}
+
+	/**
+	 * Append entries of a block to a bucket, numbering their lines
+	 * within the whole file.
+	 *
+	 * @param bucket  the bucket of the whole file
+	 * @param entries the entries of the block
+	 * @param base    the number of lines before the block
+	 */
+	private static <T extends Entry> void append(List<T> bucket,
+									List<T> entries, int base) {
+		for (T entry : entries) {
+			entry._line += base;
+		}
+		bucket.addAll(entries);
+	}
+
+	/**
+	 * Parse a block of whole lines of the file.
+	 *
+	 * @param tokenizer the tokenizer of the block
+	 * @return the entries of the block, bucketed by kind
+	 */
+	private static Batch parseBlock(ImportTokenizer tokenizer) {
+		Batch batch = new Batch();
+
+		while (tokenizer.nextRecord()) {
+			int line = tokenizer.getLineNumber();
+			int fields = tokenizer.getFieldCount();
+
+			if (tokenizer.fieldEquals(0, "CLIENT") && fields >= 4) {
+				batch._clients.add(new ClientEntry(line,
+						tokenizer.getField(1), tokenizer.getField(2),
+						tokenizer.getField(3)));
+			} else if (tokenizer.fieldEquals(0, "BASIC") && fields >= 4) {
+				batch._terminals.add(new TerminalEntry(line, "BASIC",
+						tokenizer.getField(1), tokenizer.getField(2),
+						tokenizer.getField(3, TERMINAL_STATES)));
+			} else if (tokenizer.fieldEquals(0, "FANCY") && fields >= 4) {
+				batch._terminals.add(new TerminalEntry(line, "FANCY",
+						tokenizer.getField(1), tokenizer.getField(2),
+						tokenizer.getField(3, TERMINAL_STATES)));
+			} else if (tokenizer.fieldEquals(0, "FRIENDS") && fields >= 3) {
+				String[] friends = new String[tokenizer.splitValues(2)];
+				for (int i = 0; i < friends.length; i++) {
+					friends[i] = tokenizer.getValue(i);
+				}
+				batch._friends.add(new FriendsEntry(line,
+						tokenizer.getField(1), friends));
+			} else {
+				batch._unrecognized.add(
+						new UnrecognizedEntry(line, tokenizer.getRecord()));
+			}
+		}
+		batch._lines = tokenizer.getLineNumber();
+		return batch;
+	}
+
+	/**
+	 * Validate the entries in parallel, phase by phase: first the
+	 * clients, then the terminals and finally the friends.
+	 */
+	void validate() {
+		validateClients();
+		validateTerminals();
+		validateFriends();
+	}
+
+	/**
+	 * Validate the client entries. A client is a duplicate if its key
+	 * is already used in the network or by a previous entry.
+	 */
+	private void validateClients() {
+		_entries._clients.parallelStream().forEach(entry -> {
+			if (!isTaxIdValid(entry._taxId)) {
+				entry.reject(Status.UNRECOGNIZED_ENTRY, null);
+			} else if (_network.hasClient(entry._key)) {
+				entry.reject(Status.DUPLICATE_CLIENT_KEY, entry._key);
+			} else {
+				_clientKeys.merge(ClientDirectory.fold(entry._key),
+								  entry._line, Math::min);
+			}
+		});
+
+		_entries._clients.parallelStream().forEach(entry -> {
+			if (entry.isValid() && _clientKeys.get(
+					ClientDirectory.fold(entry._key)) != entry._line) {
+				entry.reject(Status.DUPLICATE_CLIENT_KEY, entry._key);
+			}
+		});
+	}
+
+	/**
+	 * Validate the terminal entries, in the same order as when
+	 * registering a terminal: the client, the key format and then if
+	 * the key is already used in the network or by a previous entry.
+	 */
+	private void validateTerminals() {
+		_entries._terminals.parallelStream().forEach(entry -> {
+			if (!_network.hasClient(entry._clientKey) &&
+					!_clientKeys.containsKey(
+							ClientDirectory.fold(entry._clientKey))) {
+				entry.reject(Status.UNKNOWN_CLIENT_KEY, entry._clientKey);
+			} else if (!_network.isTerminalKeyValid(entry._key)) {
+				entry.reject(Status.INVALID_TERMINAL_KEY, entry._key);
+			} else if (_network.hasTerminal(entry._key)) {
+				entry.reject(Status.DUPLICATE_TERMINAL_KEY, entry._key);
+			} else {
+				_terminalKeys.merge(entry._key, entry._line, Math::min);
+			}
+		});
+
+		_entries._terminals.parallelStream().forEach(entry -> {
+			if (entry.isValid() &&
+					_terminalKeys.get(entry._key) != entry._line) {
+				entry.reject(Status.DUPLICATE_TERMINAL_KEY, entry._key);
+			}
+		});
+	}
+
+	/**
+	 * Validate the friends entries: the terminal and all of its friends
+	 * must exist in the network or be imported.
+	 */
+	private void validateFriends() {
+		_entries._friends.parallelStream().forEach(entry -> {
+			if (!isTerminalKnown(entry._key)) {
+				entry.reject(Status.UNKNOWN_TERMINAL_KEY, entry._key);
+				return;
+			}
+			for (String friend : entry._friends) {
+				if (!isTerminalKnown(friend)) {
+					entry.reject(Status.UNKNOWN_TERMINAL_KEY, friend);
+					return;
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param key the key of a terminal
+	 * @return true if the terminal exists in the network or is imported
+	 */
+	private boolean isTerminalKnown(String key) {
+		return _network.hasTerminal(key) || _terminalKeys.containsKey(key);
+	}
+
+	/**
+	 * Check a tax id without parsing it, so bad lines do not create
+	 * exceptions. It accepts the same numbers as Integer.parseInt.
+	 *
+	 * @param taxId the tax id of a client entry
+	 * @return true if the tax id is a valid number
+	 */
+	private static boolean isTaxIdValid(String taxId) {
+		int length = taxId.length();
+		int i = 0;
+		if (length > 0 && (taxId.charAt(0) == '-' || taxId.charAt(0) == '+')) {
+			i++;
+		}
+		if (i == length) {
+			return false;
+		}
+		long limit = taxId.charAt(0) == '-' ? -(long) Integer.MIN_VALUE
+						: Integer.MAX_VALUE;
+		long value = 0;
+		for (; i < length; i++) {
+			int digit = Character.digit(taxId.charAt(i), 10);
+			if (digit < 0) {
+				return false;
+			}
+			value = value * 10 + digit;
+			if (value > limit) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add the valid entries to the network, phase by phase. The entities
+	 * are created in parallel and then added in the order of the file.
+	 *
+	 * @return the number of entries which have been added
+	 */
+	int apply() {
+		List<Client> clients = _entries._clients
+				.parallelStream()
+				.filter(Entry::isValid)
+				.map(entry -> new Client(entry._key, entry._name,
+										 Integer.parseInt(entry._taxId)))
+				.collect(Collectors.toList());
+		clients.forEach(_network::addClient);
+
+		List<Terminal> terminals = _entries._terminals
+				.parallelStream()
+				.filter(Entry::isValid)
+				.map(this::createTerminal)
+				.collect(Collectors.toList());
+		terminals.forEach(_network::addTerminal);
+
+		int imported = clients.size() + terminals.size();
+		for (FriendsEntry entry : _entries._friends) {
+			if (entry.isValid()) {
+				imported++;
+				Terminal terminal = _network.findTerminal(entry._key).get();
+				for (String friend : entry._friends) {
+					try {
+						terminal.addFriend(_network, friend);
+					} catch (UnknownTerminalKeyException e) {
+						/* cannot happen: every friend has been validated */
+						throw new IllegalStateException(e);
+					}
+				}
+			}
+		}
+		_network.setChanged(true);
+		return imported;
+	}
+
+	/**
+	 * @param entry a valid terminal entry
+	 * @return the terminal of the entry
+	 */
+	private Terminal createTerminal(TerminalEntry entry) {
+		Client client = _network.findClient(entry._clientKey).get();
+		if (entry._type.equals("BASIC")) {
+			return new BasicTerminal(entry._key, client, entry._state);
+		} else {
+			return new FancyTerminal(entry._key, client, entry._state);
+		}
+	}
+}
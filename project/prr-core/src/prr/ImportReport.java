@@ -0,0 +1,124 @@
+package prr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Report of an import which does not stop at rejected entries.
+ *
+ * Every line of the import file is validated and the valid ones are
+ * imported. Each rejected line is only recorded, with the type of the
+ * exception that would have been thrown for it, so no exception (nor its
+ * stack trace) is created for it.
+ */
+public class ImportReport {
+
+	/**
+	 * A line of the import file which has been rejected.
+	 */
+	public static class Reject {
+
+		/** Number of the line in the import file. */
+		private final int _line;
+
+		/** The rejected record. */
+		private final String _record;
+
+		/** Type of the exception which rejected the record. */
+		private final Class<? extends Exception> _type;
+
+		/**
+		 * @param line   the number of the line in the import file
+		 * @param record the rejected record
+		 * @param type   the type of the exception which rejected the record
+		 */
+		Reject(int line, String record, Class<? extends Exception> type) {
+			_line = line;
+			_record = record;
+			_type = type;
+		}
+
+		/**
+		 * @return the number of the line in the import file
+		 */
+		public int getLine() {
+			return _line;
+		}
+
+		/**
+		 * @return the rejected record
+		 */
+		public String getRecord() {
+			return _record;
+		}
+
+		/**
+		 * @return the type of the exception which rejected the record
+		 */
+		public Class<? extends Exception> getType() {
+			return _type;
+		}
+
+		@Override
+		public String toString() {
+			return _line + "|" + _type.getSimpleName() + "|" + _record;
+		}
+	}
+
+	/** The rejected lines, in the order of the file. */
+	private final List<Reject> _rejects = new ArrayList<Reject>();
+
+	/** Number of lines which have been imported. */
+	private int _imported = 0;
+
+	/**
+	 * Record a rejected line. Lines must be recorded in the order of the
+	 * file.
+	 *
+	 * @param line   the number of the line in the import file
+	 * @param record the rejected record
+	 * @param type   the type of the exception which rejected the record
+	 */
+	void reject(int line, String record, Class<? extends Exception> type) {
+		_rejects.add(new Reject(line, record, type));
+	}
+
+	/**
+	 * @param imported the number of lines which have been imported
+	 */
+	void setImported(int imported) {
+		_imported = imported;
+	}
+
+	/**
+	 * @return the number of lines which have been imported
+	 */
+	public int getImported() {
+		return _imported;
+	}
+
+	/**
+	 * @return the rejected lines, in the order of the file
+	 */
+	public List<Reject> getRejects() {
+		return Collections.unmodifiableList(_rejects);
+	}
+
+	/**
+	 * @return true if no line has been rejected
+	 */
+	public boolean isClean() {
+		return _rejects.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		for (Reject reject : _rejects) {
+			report.append(reject).append('\n');
+		}
+		return report.toString();
+	}
+}
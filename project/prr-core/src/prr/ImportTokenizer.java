@@ -0,0 +1,357 @@
+package prr;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Tokenizer for the records of a block of a text import file.
+ *
+ * Each line of the file is a record made of fields separated by '|'.
+ * Lines are scanned directly from the characters (or bytes) of the block
+ * and the fields are kept as offsets into it, so no regular expressions,
+ * arrays or strings are created while scanning: strings are only built
+ * for the fields that are explicitly requested.
+ */
+abstract class ImportTokenizer {
+
+	/** Separator between the fields of a record. */
+	static final char FIELD_SEPARATOR = '|';
+
+	/** Separator between the values of a list field. */
+	static final char LIST_SEPARATOR = ',';
+
+	/** Initial number of fields that can be kept per record. */
+	private static final int FIELDS_SIZE = 8;
+
+	/** Position of the first character not yet consumed. */
+	private int _position = 0;
+
+	/** Position after the last character of the block. */
+	private final int _limit;
+
+	/** Position of the first character of the current record. */
+	private int _recordStart = 0;
+
+	/** Position after the last character of the current record. */
+	private int _recordEnd = 0;
+
+	/** Start positions of the fields of the current record. */
+	private int[] _fieldStarts = new int[FIELDS_SIZE];
+
+	/** End positions of the fields of the current record. */
+	private int[] _fieldEnds = new int[FIELDS_SIZE];
+
+	/** Number of fields of the current record. */
+	private int _fieldCount = 0;
+
+	/** Start positions of the values of the last split list field. */
+	private int[] _valueStarts = new int[FIELDS_SIZE];
+
+	/** End positions of the values of the last split list field. */
+	private int[] _valueEnds = new int[FIELDS_SIZE];
+
+	/** Number of values of the last split list field. */
+	private int _valueCount = 0;
+
+	/** Number of the line of the current record. */
+	private int _lineNumber = 0;
+
+	/**
+	 * Tokenizer for a block of characters.
+	 */
+	static class Chars extends ImportTokenizer {
+
+		/** The characters of the block. */
+		private final char[] _buffer;
+
+		/**
+		 * @param block  the characters of a block of whole lines
+		 * @param length the number of characters of the block
+		 */
+		Chars(char[] block, int length) {
+			super(length);
+			_buffer = block;
+		}
+
+		@Override
+		int charAt(int position) {
+			return _buffer[position];
+		}
+
+		@Override
+		String string(int start, int end) {
+			return new String(_buffer, start, end - start);
+		}
+	}
+
+	/**
+	 * Tokenizer for a block of bytes, such as a region of a memory-mapped
+	 * file. The bytes are scanned in place and only decoded when a
+	 * string is requested, so the charset must encode the separators,
+	 * and only them, as the corresponding single bytes (as UTF-8 and the
+	 * ISO-8859 charsets do).
+	 */
+	static class Bytes extends ImportTokenizer {
+
+		/** The bytes of the block. */
+		private final ByteBuffer _buffer;
+
+		/** The charset with which the strings are decoded. */
+		private final Charset _charset;
+
+		/** Reusable buffer for the bytes of the decoded strings. */
+		private byte[] _scratch = new byte[64];
+
+		/**
+		 * @param block   the bytes of a block of whole lines
+		 * @param charset the charset with which the strings are decoded
+		 */
+		Bytes(ByteBuffer block, Charset charset) {
+			super(block.remaining());
+			_buffer = block;
+			_charset = charset;
+		}
+
+		@Override
+		int charAt(int position) {
+			return _buffer.get(position) & 0xff;
+		}
+
+		@Override
+		String string(int start, int end) {
+			int length = end - start;
+			if (length > _scratch.length) {
+				_scratch = new byte[Math.max(length, 2 * _scratch.length)];
+			}
+			_buffer.get(start, _scratch, 0, length);
+			return new String(_scratch, 0, length, _charset);
+		}
+	}
+
+	/**
+	 * @param length the number of characters of the block
+	 */
+	private ImportTokenizer(int length) {
+		_limit = length;
+	}
+
+	/**
+	 * @param position the position of a character of the block
+	 * @return the character at the given position
+	 */
+	abstract int charAt(int position);
+
+	/**
+	 * @param start the position of the first character of the string
+	 * @param end   the position after the last character of the string
+	 * @return a new string with the characters between the positions
+	 */
+	abstract String string(int start, int end);
+
+	/**
+	 * Advance to the next record of the block.
+	 *
+	 * @return true if there is a new current record, false if the end
+	 *         of the block has been reached
+	 */
+	boolean nextRecord() {
+		int end = findLineEnd();
+		if (end < 0) {
+			return false;
+		}
+
+		_recordStart = _position;
+		_recordEnd = end;
+		_position = end < _limit ? end + 1 : end;
+		if (_recordEnd > _recordStart && charAt(_recordEnd - 1) == '\r') {
+			_recordEnd--;
+		}
+		_lineNumber++;
+		splitFields();
+		return true;
+	}
+
+	/**
+	 * Find the end of the line starting at the current position. The
+	 * last line of the block is only considered if it is not empty.
+	 *
+	 * @return the position of the line terminator (or of the end of the
+	 *         block), or -1 if there are no more lines
+	 */
+	private int findLineEnd() {
+		for (int scan = _position; scan < _limit; scan++) {
+			if (charAt(scan) == '\n') {
+				return scan;
+			}
+		}
+		return _position < _limit ? _limit : -1;
+	}
+
+	/**
+	 * Split the current record in its fields. As with String.split, the
+	 * trailing empty fields are not considered.
+	 */
+	private void splitFields() {
+		_fieldCount = 0;
+		int start = _recordStart;
+		for (int i = _recordStart; i <= _recordEnd; i++) {
+			if (i == _recordEnd || charAt(i) == FIELD_SEPARATOR) {
+				addField(start, i);
+				start = i + 1;
+			}
+		}
+		while (_fieldCount > 1 &&
+				_fieldStarts[_fieldCount - 1] == _fieldEnds[_fieldCount - 1]) {
+			_fieldCount--;
+		}
+	}
+
+	/**
+	 * Keep the bounds of a field of the current record.
+	 *
+	 * @param start the position of the first character of the field
+	 * @param end   the position after the last character of the field
+	 */
+	private void addField(int start, int end) {
+		if (_fieldCount == _fieldStarts.length) {
+			int[] starts = new int[_fieldCount * 2];
+			int[] ends = new int[_fieldCount * 2];
+			System.arraycopy(_fieldStarts, 0, starts, 0, _fieldCount);
+			System.arraycopy(_fieldEnds, 0, ends, 0, _fieldCount);
+			_fieldStarts = starts;
+			_fieldEnds = ends;
+		}
+		_fieldStarts[_fieldCount] = start;
+		_fieldEnds[_fieldCount] = end;
+		_fieldCount++;
+	}
+
+	/**
+	 * @return the number of the line of the current record
+	 */
+	int getLineNumber() {
+		return _lineNumber;
+	}
+
+	/**
+	 * @return the number of fields of the current record
+	 */
+	int getFieldCount() {
+		return _fieldCount;
+	}
+
+	/**
+	 * Check if a field of the current record has the given value,
+	 * without creating a string for it.
+	 *
+	 * @param index the index of the field
+	 * @param value the value to compare with
+	 * @return true if the field has the given value, false otherwise
+	 */
+	boolean fieldEquals(int index, String value) {
+		int start = _fieldStarts[index];
+		int length = _fieldEnds[index] - start;
+
+		if (length != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (charAt(start + i) != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the value of a field of the current record.
+	 *
+	 * @param index the index of the field
+	 * @return a new string with the value of the field
+	 */
+	String getField(int index) {
+		return string(_fieldStarts[index], _fieldEnds[index]);
+	}
+
+	/**
+	 * Get the value of a field of the current record, reusing one of the
+	 * given constants if the field is equal to it.
+	 *
+	 * @param index     the index of the field
+	 * @param constants the known values of the field
+	 * @return the matching constant or a new string with the value
+	 */
+	String getField(int index, String[] constants) {
+		for (String constant : constants) {
+			if (fieldEquals(index, constant)) {
+				return constant;
+			}
+		}
+		return getField(index);
+	}
+
+	/**
+	 * Split a list field of the current record in its values, which can
+	 * then be got with getValue. As with String.split, the trailing empty
+	 * values are not considered.
+	 *
+	 * @param index the index of the list field
+	 * @return the number of values of the field
+	 */
+	int splitValues(int index) {
+		_valueCount = 0;
+		int start = _fieldStarts[index];
+		int end = _fieldEnds[index];
+		int count = 0;
+
+		for (int i = start; i <= end; i++) {
+			if (i == end || charAt(i) == LIST_SEPARATOR) {
+				addValue(start, i);
+				if (i > start) {
+					count = _valueCount;
+				}
+				start = i + 1;
+			}
+		}
+		_valueCount = _fieldStarts[index] == end ? 1 : count;
+		return _valueCount;
+	}
+
+	/**
+	 * Keep the bounds of a value of the last split list field.
+	 *
+	 * @param start the position of the first character of the value
+	 * @param end   the position after the last character of the value
+	 */
+	private void addValue(int start, int end) {
+		if (_valueCount == _valueStarts.length) {
+			int[] starts = new int[_valueCount * 2];
+			int[] ends = new int[_valueCount * 2];
+			System.arraycopy(_valueStarts, 0, starts, 0, _valueCount);
+			System.arraycopy(_valueEnds, 0, ends, 0, _valueCount);
+			_valueStarts = starts;
+			_valueEnds = ends;
+		}
+		_valueStarts[_valueCount] = start;
+		_valueEnds[_valueCount] = end;
+		_valueCount++;
+	}
+
+	/**
+	 * Get one of the values of the last split list field.
+	 *
+	 * @param position the position of the value in the list
+	 * @return a new string with the value
+	 */
+	String getValue(int position) {
+		return string(_valueStarts[position], _valueEnds[position]);
+	}
+
+	/**
+	 * @return a new string with the current record, without its
+	 *         trailing empty fields
+	 */
+	String getRecord() {
+		return string(_recordStart, _fieldEnds[_fieldCount - 1]);
+	}
+}
@@ -0,0 +1,554 @@
+package prr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+
+/**
+ * Append-only journal of the operations which changed a Network after
+ * its last full snapshot.
+ *
+ * Operations are recorded in memory as they succeed and are appended to
+ * the journal file when the network is saved, so a save only writes what
+ * changed. Loading replays the journal on top of the snapshot.
+ *
+ * Operations are recorded by the thread which changes the network,
+ * while the journal file is written by the thread which saves it: the
+ * pending records are handed from one to the other as a whole.
+ *
+ * Every journal has a random id. A snapshot tells which journal it
+ * continues and how many bytes of it are already included in it, so a
+ * journal is only replayed on top of the snapshot it belongs to, and
+ * the snapshot can be compacted (rewritten with the journal included)
+ * while new operations keep being appended. After a compaction the
+ * journal is rotated: a new journal, which continues the old one from
+ * the compacted offset, replaces it.
+ *
+ * The file starts with a header (magic number, version, id, and the id
+ * and offset of the journal it continues), followed by the records.
+ * Each record is its length, a CRC-32 and the operation with its
+ * arguments, so a record which was not completely written is detected
+ * and discarded with everything after it.
+ */
+public class Journal {
+
+	/**
+	 * Operations which change a Network, with the number of their
+	 * arguments (all of them recorded as strings).
+	 */
+	public enum Operation {
+		/** Client key, name and tax id. */
+		REGISTER_CLIENT(3),
+		/** Terminal type, key, client key and state. */
+		REGISTER_TERMINAL(4),
+		/** Terminal key and friend key. */
+		ADD_FRIEND(2),
+		/** Terminal key and friend key. */
+		REMOVE_FRIEND(2),
+		/**
+		 * Source terminal key, destination terminal key and message
+		 * (written by older versions: the text is rated again when it is
+		 * replayed).
+		 */
+		SEND_TEXT(3),
+		/** Source terminal key, destination terminal key and type. */
+		START_INTERACTIVE(3),
+		/**
+		 * Terminal key and duration (written by older versions: the
+		 * communication is rated again when it is replayed).
+		 */
+		END_INTERACTIVE(2),
+		/** Terminal key and communication key. */
+		PAY(2),
+		/** Terminal key. */
+		TURN_ON(1),
+		/** Terminal key. */
+		TURN_OFF(1),
+		/** Terminal key. */
+		SILENCE(1),
+		/** Client key. */
+		ENABLE_NOTIFICATIONS(1),
+		/** Client key. */
+		DISABLE_NOTIFICATIONS(1),
+		/** Client key. */
+		CLEAR_NOTIFICATIONS(1),
+		/** Terminal key and key of the client who tried to contact it. */
+		CONTACT_ATTEMPT(2),
+		/** Terminal key, communication key and new cost in Money. */
+		RERATE(3),
+		/**
+		 * Source terminal key, destination terminal key, message and the
+		 * cost charged, in Money.
+		 */
+		SEND_CHARGED_TEXT(4),
+		/** Terminal key, duration and the cost charged, in Money. */
+		END_CHARGED_INTERACTIVE(3);
+
+		/** Number of arguments of the operation. */
+		private final int _arguments;
+
+		/**
+		 * @param arguments the number of arguments of the operation
+		 */
+		Operation(int arguments) {
+			_arguments = arguments;
+		}
+	}
+
+	/** Magic number which starts every journal ("PRRJ"). */
+	static final int MAGIC = 0x5052524A;
+
+	/** Version of the format of the journal. */
+	static final int VERSION = 1;
+
+	/** Size of the header of a journal. */
+	static final int HEADER_SIZE = 4 + 2 + 3 * Long.BYTES;
+
+	/** Size of the length and CRC-32 before each record. */
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+	/** Maximum size of a record, to detect corrupted lengths. */
+	private static final int MAX_RECORD_SIZE = 1 << 26;
+
+	/** The journal file. */
+	private final Path _path;
+
+	/** The id of the journal. */
+	private long _id;
+
+	/** The journal file, once something is appended to it. */
+	private FileChannel _channel;
+
+	/** Size of the valid part of the journal file. */
+	private long _size;
+
+	/** Records not yet appended to the journal file. */
+	private final ByteArrayOutputStream _pending = new ByteArrayOutputStream();
+
+	/**
+	 * @param path the journal file
+	 * @param id   the id of the journal
+	 * @param size the size of the valid part of the journal file
+	 */
+	private Journal(Path path, long id, long size) {
+		_path = path;
+		_id = id;
+		_size = size;
+	}
+
+	/**
+	 * Journal for a new snapshot, whose file is only written by create.
+	 *
+	 * @param path the journal file
+	 * @param id   the id of the journal, as written in the snapshot
+	 */
+	Journal(Path path, long id) {
+		this(path, id, HEADER_SIZE);
+	}
+
+	/**
+	 * @param snapshot the name of a snapshot file
+	 * @return the journal file of the snapshot
+	 */
+	static Path pathOf(String snapshot) {
+		return Path.of(snapshot + ".journal");
+	}
+
+	/**
+	 * Create a new, empty, journal for a new snapshot, writing the
+	 * header of the journal file, which replaces the existing one. The
+	 * snapshot must be written first, so an interrupted save never
+	 * leaves a journal which seems to belong to the previous snapshot.
+	 *
+	 * @throws IOException if the journal file cannot be written
+	 */
+	void create() throws IOException {
+		writeFile(_path, _id, 0, 0, null, 0, 0);
+	}
+
+	/**
+	 * Write a journal file, replacing the existing one atomically, with
+	 * a copy of some records of another journal file.
+	 */
+	private static void writeFile(Path path, long id, long previousId,
+			long previousOffset, FileChannel records, long start, long end)
+			throws IOException {
+
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putShort((short) VERSION).putLong(id)
+				  .putLong(previousId).putLong(previousOffset).flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			for (long position = start; position < end; ) {
+				position += records.transferTo(position, end - position,
+											   channel);
+			}
+			channel.force(true);
+		}
+		Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+				   StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return a new random journal id, never 0
+	 */
+	static long newId() {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		return id;
+	}
+
+	/**
+	 * Open the journal of a snapshot and replay it on the network read
+	 * from the snapshot. A journal which does not belong to the snapshot
+	 * (as one left by an interrupted save) is ignored.
+	 *
+	 * @param path           the journal file
+	 * @param snapshotId     the id of the journal continued by the snapshot
+	 * @param snapshotOffset the offset from which the snapshot continues it
+	 * @param network        the network read from the snapshot
+	 * @return the journal, or null if the snapshot has no journal
+	 * @throws IOException if the journal cannot be read or replayed
+	 */
+	static Journal open(Path path, long snapshotId, long snapshotOffset,
+			Network network) throws IOException {
+
+		if (snapshotId == 0 || !Files.exists(path)) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(path,
+											StandardOpenOption.READ)) {
+			long[] header = readHeader(channel);
+			long start = startOf(header, snapshotId, snapshotOffset);
+			if (start < 0) {
+				return null;
+			}
+			long end = replay(channel, start, channel.size(), network);
+			return new Journal(path, header[0], end);
+		}
+	}
+
+	/**
+	 * Find the first record of a journal which is not included in a
+	 * snapshot.
+	 *
+	 * @param header         the header of the journal
+	 * @param snapshotId     the id of the journal continued by the snapshot
+	 * @param snapshotOffset the offset from which the snapshot continues it
+	 * @return the offset of the first record not included in the
+	 *         snapshot, or -1 if the journal does not belong to it
+	 */
+	static long startOf(long[] header, long snapshotId, long snapshotOffset) {
+		if (header[0] == snapshotId) {
+			return snapshotOffset;
+		} else if (header[1] == snapshotId && header[2] == snapshotOffset) {
+			return HEADER_SIZE;
+		}
+		return -1;
+	}
+
+	/**
+	 * Replay the records of part of a journal file on a network, which
+	 * does not record them again. Replaying stops at the first record
+	 * which was not completely written.
+	 *
+	 * @param channel the journal file
+	 * @param start   the offset of the first record to replay
+	 * @param end     the offset after the last record to replay
+	 * @param network the network on which the records are replayed
+	 * @return the offset after the last record which was replayed
+	 * @throws IOException if the journal cannot be read or replayed
+	 */
+	static long replay(FileChannel channel, long start, long end,
+			Network network) throws IOException {
+
+		if (start < HEADER_SIZE || start > end) {
+			throw new StreamCorruptedException("invalid journal offset");
+		}
+
+		Journal journal = network.getJournal();
+		network.setJournal(null);
+		try {
+			ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			CRC32 crc = new CRC32();
+			long position = start;
+			while (position + RECORD_HEADER_SIZE <= end) {
+				recordHeader.clear();
+				readFully(channel, recordHeader, position);
+				int length = recordHeader.getInt(0);
+				if (length <= 0 || length > MAX_RECORD_SIZE ||
+						position + RECORD_HEADER_SIZE + length > end) {
+					break;
+				}
+
+				ByteBuffer record = ByteBuffer.allocate(length);
+				readFully(channel, record, position + RECORD_HEADER_SIZE);
+				crc.reset();
+				crc.update(record.array());
+				if ((int) crc.getValue() != recordHeader.getInt(Integer.BYTES)) {
+					break;
+				}
+
+				apply(record, network);
+				position += RECORD_HEADER_SIZE + length;
+			}
+			return position;
+		} finally {
+			network.setJournal(journal);
+		}
+	}
+
+	/**
+	 * Read the header of a journal file.
+	 *
+	 * @return the id of the journal and the id and offset of the journal
+	 *         it continues
+	 */
+	static long[] readHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(channel, header, 0);
+		if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+			throw new StreamCorruptedException("not a journal");
+		}
+		return new long[] { header.getLong(), header.getLong(),
+							header.getLong() };
+	}
+
+	/**
+	 * Fill a buffer with the bytes of a file from a position.
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer,
+			long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new StreamCorruptedException("truncated journal");
+			}
+			position += read;
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * Apply a record to a network, by performing its operation again.
+	 */
+	private static void apply(ByteBuffer record, Network network)
+			throws IOException {
+
+		Operation[] operations = Operation.values();
+		int code = record.get();
+		if (code < 0 || code >= operations.length) {
+			throw new StreamCorruptedException("unknown journal operation");
+		}
+		Operation operation = operations[code];
+		String[] arguments = new String[operation._arguments];
+		for (int i = 0; i < arguments.length; i++) {
+			byte[] bytes = new byte[record.getInt()];
+			record.get(bytes);
+			arguments[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		try {
+			switch (operation) {
+				case REGISTER_CLIENT -> network.registerClient(
+						arguments[0], arguments[1], arguments[2]);
+				case REGISTER_TERMINAL -> network.registerTerminal(
+						arguments[0], arguments[1], arguments[2], arguments[3]);
+				case ADD_FRIEND -> network.getTerminal(arguments[0])
+						.addFriend(network, arguments[1]);
+				case REMOVE_FRIEND -> network.getTerminal(arguments[0])
+						.removeFriend(network, arguments[1]);
+				case SEND_TEXT -> network.getTerminal(arguments[0])
+						.sendTextCommunication(network, arguments[1],
+											   arguments[2]);
+				case START_INTERACTIVE -> network.getTerminal(arguments[0])
+						.startInteractiveCommunication(network, arguments[1],
+													   arguments[2]);
+				case END_INTERACTIVE -> network.getTerminal(arguments[0])
+						.endInteractiveCommunication(network,
+								Integer.parseInt(arguments[1]));
+				case PAY -> network.getTerminal(arguments[0])
+						.payCommunication(network,
+								Integer.parseInt(arguments[1]));
+				case TURN_ON -> network.getTerminal(arguments[0])
+						.turnOn(network);
+				case TURN_OFF -> network.getTerminal(arguments[0])
+						.turnOff(network);
+				case SILENCE -> network.getTerminal(arguments[0])
+						.silence(network);
+				case ENABLE_NOTIFICATIONS ->
+						network.enableClientNotifications(arguments[0]);
+				case DISABLE_NOTIFICATIONS ->
+						network.disableClientNotifications(arguments[0]);
+				case CLEAR_NOTIFICATIONS ->
+						network.getClientNotifications(arguments[0]);
+				case CONTACT_ATTEMPT -> network.getTerminal(arguments[0])
+						.registerContactAttempt(
+								network.getClient(arguments[1]));
+				case RERATE -> network.getTerminal(arguments[0])
+						.rerateCommunication(network,
+								Integer.parseInt(arguments[1]),
+								Long.parseLong(arguments[2]));
+				case SEND_CHARGED_TEXT -> network.getTerminal(arguments[0])
+						.sendTextCommunication(network, arguments[1],
+								arguments[2], Long.parseLong(arguments[3]));
+				case END_CHARGED_INTERACTIVE ->
+						network.getTerminal(arguments[0])
+								.endInteractiveCommunication(network,
+										Integer.parseInt(arguments[1]),
+										Long.parseLong(arguments[2]));
+			}
+		} catch (Exception e) {
+			// the operation succeeded when it was recorded
+			StreamCorruptedException corrupted = new StreamCorruptedException(
+					"cannot replay " + operation);
+			corrupted.initCause(e);
+			throw corrupted;
+		}
+	}
+
+	/**
+	 * @return the id of the journal
+	 */
+	long getId() {
+		return _id;
+	}
+
+	/**
+	 * @return the size of the valid part of the journal file
+	 */
+	long size() {
+		return _size;
+	}
+
+	/**
+	 * Record an operation, which is only appended to the journal file
+	 * by the next flush.
+	 *
+	 * @param operation the operation
+	 * @param arguments the arguments of the operation
+	 */
+	void record(Operation operation, String... arguments) {
+		if (arguments.length != operation._arguments) {
+			throw new IllegalArgumentException(operation.toString());
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream record = new DataOutputStream(bytes);
+			record.writeByte(operation.ordinal());
+			for (String argument : arguments) {
+				byte[] encoded = argument.getBytes(StandardCharsets.UTF_8);
+				record.writeInt(encoded.length);
+				record.write(encoded);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(bytes.toByteArray());
+			DataOutputStream out = new DataOutputStream(_pending);
+			out.writeInt(bytes.size());
+			out.writeInt((int) crc.getValue());
+			bytes.writeTo(out);
+		} catch (IOException e) {
+			// never thrown by in-memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Take the pending records, which are no longer kept in the journal,
+	 * to be appended to the journal file.
+	 *
+	 * @return the pending records
+	 */
+	byte[] takePending() {
+		byte[] records = _pending.toByteArray();
+		_pending.reset();
+		return records;
+	}
+
+	/**
+	 * Append records to the journal file and force them to the storage
+	 * device. Anything after the valid part of the file (as a record
+	 * which was not completely written) is discarded first.
+	 *
+	 * @param records the records taken from the journal
+	 * @throws IOException if the journal file cannot be written
+	 */
+	void append(byte[] records) throws IOException {
+		if (records.length == 0) {
+			return;
+		}
+		if (_channel == null) {
+			_channel = FileChannel.open(_path, StandardOpenOption.WRITE);
+		}
+		_channel.truncate(_size);
+		ByteBuffer buffer = ByteBuffer.wrap(records);
+		long position = _size;
+		while (buffer.hasRemaining()) {
+			position += _channel.write(buffer, position);
+		}
+		_channel.force(false);
+		_size = position;
+	}
+
+	/**
+	 * Replace the journal file by the file of a new journal, which
+	 * continues this one from an offset whose records have been
+	 * compacted into the snapshot. The records after the offset are
+	 * copied to the new file, and this journal becomes the new one.
+	 *
+	 * @param offset the offset up to which this journal has been compacted
+	 * @throws IOException if the journal files cannot be read or written
+	 */
+	void rotate(long offset) throws IOException {
+		long id = newId();
+		try (FileChannel channel = FileChannel.open(_path,
+											StandardOpenOption.READ)) {
+			writeFile(_path, id, _id, offset, channel, offset, _size);
+		}
+		closeChannel();
+		_size = HEADER_SIZE + _size - offset;
+		_id = id;
+	}
+
+	/**
+	 * Close the journal file, discarding the pending records.
+	 */
+	void close() {
+		_pending.reset();
+		closeChannel();
+	}
+
+	/**
+	 * Close the journal file, if it is open.
+	 */
+	private void closeChannel() {
+		if (_channel != null) {
+			try {
+				_channel.close();
+			} catch (IOException e) {
+				// nothing left to write
+			}
+			_channel = null;
+		}
+	}
+}
@@ -1,23 +1,26 @@
 package prr;
 
-import java.io.Serializable;
 import java.io.IOException;
 import java.io.FileReader;
-import java.io.BufferedReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.LinkedList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
+import java.util.function.Function;
 
 import prr.clients.Client;
 import prr.clients.Notification;
 import prr.communications.Communication;
+import prr.communications.CommunicationColumns;
 import prr.communications.InteractiveCommunication;
 import prr.communications.TextCommunication;
-import prr.communications.VoiceCommunication;
-import prr.communications.VideoCommunication;
 import prr.terminals.Terminal;
 import prr.terminals.BasicTerminal;
 import prr.terminals.FancyTerminal;
@@ -34,23 +37,18 @@ import prr.exceptions.ClientNotificationsAlreadyDisabled;
 /**
  * Class Network implements a network.
  */
-public class Network implements Serializable {
+public class Network {
 
-	/**
-	 * Serial number for serialization.
-	 */
-	private static final long serialVersionUID = 202208091753L;
 
 	/**
-	 * Map of all the clients in the Network.
+	 * Directory of all the clients in the Network.
 	 */
-	private Map<String, Client> _clients = 
-					 new TreeMap<String, Client>(String.CASE_INSENSITIVE_ORDER);
+	private ClientDirectory _clients = new ClientDirectory();
 	
 	/**
-	 * Map of all the terminals in the Network.
+	 * Directory of all the terminals in the Network.
 	 */
-	private Map<String, Terminal> _terminals = new TreeMap<String, Terminal>();
+	private TerminalDirectory _terminals = new TerminalDirectory();
 	
 	/**
 	 * Tells if changes have been made to the Network.
@@ -58,17 +56,54 @@ public class Network implements Serializable {
 	private boolean _changed = false;
 
 	/**
-	 * Map of all the communications in the Network.
+	 * All the communications in the Network.
 	 */	
-	private List<Communication> _communications = new LinkedList<Communication>();
+	private CommunicationStore _communications = new CommunicationStore();
+
+	/**
+	 * Sum of the payments of all clients, kept up to date by each
+	 * payment.
+	 */
+	private long _payments = 0;
+
+	/**
+	 * Sum of the debts of all clients, kept up to date by each payment
+	 * and each communication which is charged.
+	 */
+	private long _debts = 0;
+
+	/**
+	 * The clients by their debts.
+	 */
+	private DebtIndex _debtors = new DebtIndex();
+
+	/**
+	 * The terminals without communications, by key.
+	 */
+	private Map<String, Terminal> _unusedTerminals =
+					new TreeMap<String, Terminal>();
+
+	/**
+	 * The terminals with positive balance, by key.
+	 */
+	private Map<String, Terminal> _positiveTerminals =
+					new TreeMap<String, Terminal>();
 
 	/**
 	 * Counter of communications in the Network.
 	 */	
 	private int _communicationsCounter = 0;
 
+	/**
+	 * Journal where the changes to the Network are recorded, if any.
+	 */
+	private Journal _journal;
+
 	/**
 	 * Read text input file and create corresponding domain entities.
+	 * Entries may refer to clients and terminals which appear later in
+	 * the file and, if some entry is rejected, the Network is left
+	 * unchanged.
 	 * 
 	 * @param filename     name of the text input file
 	 * @throws IOException if there is an IO error while processing
@@ -98,15 +133,59 @@ public class Network implements Serializable {
 				InvalidTerminalKeyException, DuplicateTerminalKeyException,
 			   	UnknownTerminalKeyException {
 		
-		try (BufferedReader reader = new BufferedReader(
-										 new FileReader(filename) )) {
-			String line;
-			while ((line = reader.readLine()) != null) {
-				String[] fields = line.split("\\|");
-				registerEntry(fields);
+		importFile(filename, false, null);
+	}
+
+	/**
+	 * Read text input file and create corresponding domain entities,
+	 * optionally memory-mapping the file and parsing its bytes in place.
+	 * Files in a charset which cannot be parsed as bytes are always read
+	 * through a reader.
+	 * 
+	 * If a report is given, the import never stops at a rejected entry:
+	 * every valid entry is imported and the rejected ones are recorded
+	 * in the report instead of being thrown.
+	 * 
+	 * @param filename     name of the text input file
+	 * @param mapped       true to memory-map the file
+	 * @param report       the report of the rejected entries, or null
+	 * @throws IOException if there is an IO error while processing
+	 					   the text file
+	 * @throws UnrecognizedEntryException    if some entry is not correct
+	 * @throws DuplicateClientKeyException   if, when registering a
+	 *										 client, the given key is
+	 *										 already being used
+	 * @throws UnknownClientKeyException     if, when registering a
+	 *										 terminal, there is no
+	 *										 client with the given key
+	 * @throws InvalidTerminalKeyException   if, when registering a
+	 *										 terminal, the given key 
+	 *										 doesn't have the correct
+	 *                                       format
+	 * @throws DuplicateTerminalKeyException if, when registering a
+	 *										 terminal, the given key
+	 *										 is already being used
+	 * @throws UnknownTerminalKeyException   if, when registering
+	 *										 friends, there is no
+	 *                                       terminal with one of the
+	 *										 given keys
+	 */
+	void importFile(String filename, boolean mapped, ImportReport report) 
+				throws IOException, UnrecognizedEntryException,
+				DuplicateClientKeyException, UnknownClientKeyException,
+				InvalidTerminalKeyException, DuplicateTerminalKeyException,
+			   	UnknownTerminalKeyException {
+
+		Charset charset = Charset.defaultCharset();
+
+		if (mapped && ImportPipeline.canParseBytes(charset)) {
+			try (FileChannel channel = FileChannel.open(Path.of(filename))) {
+				new ImportPipeline(this).run(channel, charset, report);
+			}
+		} else {
+			try (FileReader reader = new FileReader(filename, charset)) {
+				new ImportPipeline(this).run(reader, report);
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
 	}
 
@@ -166,8 +245,8 @@ public class Network implements Serializable {
 			throw new DuplicateClientKeyException(key);
 		}
 
-		_clients.put(key, new Client(key, name, Integer.parseInt(taxId)));
-		setChanged(true);
+		addClient(new Client(key, name, Integer.parseInt(taxId)));
+		recordChange(Journal.Operation.REGISTER_CLIENT, key, name, taxId);
 	}
 
 	/**
@@ -204,9 +283,9 @@ public class Network implements Serializable {
 			terminal = new FancyTerminal(key, client, state);
 		}
 
-		client.addTerminal(terminal);
-		_terminals.put(key, terminal);
-		setChanged(true);
+		addTerminal(terminal);
+		recordChange(Journal.Operation.REGISTER_TERMINAL, type, key,
+					 clientKey, state);
 	}
 
 	/**
@@ -239,9 +318,12 @@ public class Network implements Serializable {
 	public TextCommunication registerTextCommunication(Terminal source,
 								Terminal destination, String message) {
 									
-		TextCommunication comm = new TextCommunication(++_communicationsCounter,
-										source, destination, message);
-		_communications.add(comm);
+		TextCommunication comm = (TextCommunication) _communications
+						.getColumns().add(CommunicationColumns.TEXT,
+						++_communicationsCounter, source, destination, false,
+						false, 0, 0, message);
+		_unusedTerminals.remove(source.getKey());
+		_unusedTerminals.remove(destination.getKey());
 		setChanged(true);
 		return comm;
 	}
@@ -257,67 +339,93 @@ public class Network implements Serializable {
 	public InteractiveCommunication registerInteractiveCommunication
 				(Terminal source, Terminal destination, String type) {
 
-		InteractiveCommunication comm;
-
-		if (type.equals("VOICE")) {
-			comm = new VoiceCommunication(++_communicationsCounter,
-										  source, destination);
-		} else {
-			comm = new VideoCommunication(++_communicationsCounter,
-										  source, destination);
-		}
-
-		_communications.add(comm);
+		byte columnsType = type.equals("VOICE") ? CommunicationColumns.VOICE
+											   : CommunicationColumns.VIDEO;
+		InteractiveCommunication comm = (InteractiveCommunication)
+						_communications.getColumns().add(columnsType,
+						++_communicationsCounter, source, destination, true,
+						false, 0, 0, null);
+		_unusedTerminals.remove(source.getKey());
+		_unusedTerminals.remove(destination.getKey());
 		setChanged(true);
 		return comm;
 	}
 
 	/**
-	 * Check if a string corresponds to a valid terminal key.
+	 * Check if a string corresponds to a valid terminal key, made of
+	 * exactly six decimal digits.
 	 * 
 	 * @param key the terminal key to be validated
 	 * @return true if the key is valid, false otherwise
 	 */
 	public boolean isTerminalKeyValid(String key) {
-		final int TERMINAL_KEY_LENGTH = 6;
-
-		if (key.length() != TERMINAL_KEY_LENGTH) {
-			return false;
-		}
-
-		try {
-			Integer.parseInt(key);
-		} catch (NumberFormatException e) {
-			return false;
-		}
-
-		return true;
+		return TerminalDirectory.indexOf(key) >= 0;
 	}
 
 	/**
 	 * Get the sum of the payments of all clients.
 	 * 
-	 * @return the sum of the payments of all clients
+	 * @return the sum of the payments of all clients, in Money
 	 */
-	public double getPayments() {
-		double payments = 0;
-		for (Client client : _clients.values()) {
-			payments += client.getPayments();
-		}
-		return payments;
+	public long getPayments() {
+		return _payments;
 	}
 
 	/**
 	 * Get the sum of the debts of all clients.
 	 *
-	 * @return the sum of the debts of all clients
+	 * @return the sum of the debts of all clients, in Money
+	 */
+	public long getDebts() {
+		return _debts;
+	}
+
+	/**
+	 * Account for the payment of a communication of a terminal, whose
+	 * balance and the balance of its client must already include it.
+	 *
+	 * @param terminal the terminal whose communication was paid
+	 * @param amount   the amount paid, in Money
+	 */
+	public void addPayment(Terminal terminal, long amount) {
+		_payments += amount;
+		_debts -= amount;
+		_debtors.update(terminal.getClient());
+		updateTerminal(terminal);
+	}
+
+	/**
+	 * Account for a communication of a terminal which is charged, whose
+	 * balance and the balance of its client must already include it.
+	 *
+	 * @param terminal the terminal charged
+	 * @param amount   the cost of the communication, in Money
+	 */
+	public void addDebt(Terminal terminal, long amount) {
+		_debts += amount;
+		_debtors.update(terminal.getClient());
+		updateTerminal(terminal);
+	}
+
+	/**
+	 * Check the sums of the payments and debts of all clients against
+	 * the balances of the clients, and rebuild them from the balances.
+	 *
+	 * @return true if the sums were consistent with the balances of the
+	 *		   clients, false otherwise
 	 */
-	public double getDebts() {
-		double debts = 0;
-		for (Client client : _clients.values()) {
+	public boolean checkBalance() {
+		long payments = 0;
+		long debts = 0;
+		for (Client client : _clients.unordered()) {
+			payments += client.getPayments();
 			debts += client.getDebts();
 		}
-		return debts;
+
+		boolean consistent = payments == _payments && debts == _debts;
+		_payments = payments;
+		_debts = debts;
+		return consistent;
 	}
 
 	/**
@@ -339,6 +447,35 @@ public class Network implements Serializable {
 		_changed = changed;
 	}
 
+	/**
+	 * Record an operation which has changed the Network, so it can be
+	 * saved by appending it to the journal of the Network.
+	 * 
+	 * @param operation the operation which has been performed
+	 * @param arguments the arguments of the operation
+	 */
+	public void recordChange(Journal.Operation operation,
+							 String... arguments) {
+		_changed = true;
+		if (_journal != null) {
+			_journal.record(operation, arguments);
+		}
+	}
+
+	/**
+	 * @return the journal where the changes are recorded, or null
+	 */
+	Journal getJournal() {
+		return _journal;
+	}
+
+	/**
+	 * @param journal the journal where the changes are recorded, or null
+	 */
+	void setJournal(Journal journal) {
+		_journal = journal;
+	}
+
 	/**
 	 * Get the client with the given attributes.
 	 * 
@@ -357,13 +494,88 @@ public class Network implements Serializable {
 		return client;
 	}
 
+	/**
+	 * Get the client with the given key, if there is one, without
+	 * throwing an exception when there is none.
+	 * 
+	 * @param key the key of the client to be got
+	 * @return the client, or an empty Optional if there is no client with
+	 *		   the key
+	 */
+	public Optional<Client> findClient(String key) {
+		return Optional.ofNullable(_clients.get(key));
+	}
+
+	/**
+	 * Check if there is a client with the given key.
+	 * 
+	 * @param key the key of the client
+	 * @return true if there is a client with the key, false otherwise
+	 */
+	boolean hasClient(String key) {
+		return _clients.containsKey(key);
+	}
+
+	/**
+	 * Add an already validated client to the Network.
+	 * 
+	 * @param client the client to be added
+	 */
+	void addClient(Client client) {
+		_clients.put(client);
+		_payments += client.getPayments();
+		_debts += client.getDebts();
+		_debtors.update(client);
+	}
+
 	/**
 	 * Get a collection of all the clients in the Network.
 	 * 
 	 * @return collection of all the clients in the Network
 	 */
 	public Collection<Client> getAllClients() {
-		return _clients.values();
+		return _clients;
+	}
+
+	/**
+	 * Get the clients with debts.
+	 *
+	 * @return collection of the clients with debts, sorted by decreasing
+	 *         debts and then by key
+	 */
+	public Collection<Client> getClientsWithDebts() {
+		return _debtors.withDebts();
+	}
+
+	/**
+	 * Get the clients without debts.
+	 *
+	 * @return collection of the clients without debts, sorted by key
+	 */
+	public Collection<Client> getClientsWithoutDebts() {
+		return _debtors.withoutDebts();
+	}
+
+	/**
+	 * Get the clients with the largest debts.
+	 *
+	 * @param count the maximum number of clients
+	 * @return list of the clients with the largest debts, sorted by
+	 *         decreasing debts and then by key
+	 */
+	public List<Client> getTopDebtors(int count) {
+		return _debtors.top(count);
+	}
+
+	/**
+	 * Get the clients whose debts are larger than an amount.
+	 *
+	 * @param amount the amount, in Money
+	 * @return collection of the clients with debts larger than the
+	 *         amount, sorted by decreasing debts and then by key
+	 */
+	public Collection<Client> getClientsWithDebtsAbove(long amount) {
+		return _debtors.above(amount);
 	}
 
 	/**
@@ -376,7 +588,13 @@ public class Network implements Serializable {
 	 */
 	public Collection<Notification> getClientNotifications(String clientKey)
 			throws UnknownClientKeyException {
-		return getClient(clientKey).clearNotifications();
+		Collection<Notification> notifications =
+						 getClient(clientKey).clearNotifications();
+
+		if (!notifications.isEmpty()) {
+			recordChange(Journal.Operation.CLEAR_NOTIFICATIONS, clientKey);
+		}
+		return notifications;
 	}
 
 	/**
@@ -397,6 +615,7 @@ public class Network implements Serializable {
 			throw new ClientNotificationsAlreadyEnabled();
 		} else {
 			client.setReceiveNotifications(true);
+			recordChange(Journal.Operation.ENABLE_NOTIFICATIONS, clientKey);
 		}
 	}
 
@@ -418,6 +637,7 @@ public class Network implements Serializable {
 			throw new ClientNotificationsAlreadyDisabled();
 		} else {
 			client.setReceiveNotifications(false);
+			recordChange(Journal.Operation.DISABLE_NOTIFICATIONS, clientKey);
 		}
 	}
 
@@ -425,11 +645,11 @@ public class Network implements Serializable {
 	 * Get the payments of a client.
 	 * 
 	 * @param clientKey the client's key
-	 * @return the value of the client's payments
+	 * @return the amount of the client's payments, in Money
 	 * @throws UnknownClientKeyException  if there is no client with
 	 * 									  the given key
 	 */
-	public double getClientPayments(String clientKey)
+	public long getClientPayments(String clientKey)
 			throws UnknownClientKeyException {
 
 		return getClient(clientKey).getPayments();
@@ -439,11 +659,11 @@ public class Network implements Serializable {
 	 * Get the debts of a client.
 	 * 
 	 * @param clientKey the client's key
-	 * @return the value of the client's debts
+	 * @return the amount of the client's debts, in Money
 	 * @throws UnknownClientKeyException if there is no client with
 	 * 									 the given key
 	 */
-	public double getClientDebts(String clientKey)
+	public long getClientDebts(String clientKey)
 			throws UnknownClientKeyException {
 		
 		return getClient(clientKey).getDebts();
@@ -469,13 +689,86 @@ public class Network implements Serializable {
 		return terminal;
 	}
 
+	/**
+	 * Get the terminal with the given key, if there is one, without
+	 * throwing an exception when there is none (nor when the key is not
+	 * valid).
+	 * 
+	 * @param key the key of the terminal to be got
+	 * @return the terminal, or an empty Optional if there is no terminal
+	 *		   with the key
+	 */
+	public Optional<Terminal> findTerminal(String key) {
+		return Optional.ofNullable(_terminals.get(key));
+	}
+
+	/**
+	 * Check if there is a terminal with the given key.
+	 * 
+	 * @param key the key of the terminal
+	 * @return true if there is a terminal with the key, false otherwise
+	 */
+	boolean hasTerminal(String key) {
+		return _terminals.containsKey(key);
+	}
+
+	/**
+	 * Add an already validated terminal to the Network and to its client.
+	 * 
+	 * @param terminal the terminal to be added
+	 */
+	void addTerminal(Terminal terminal) {
+		terminal.getClient().addTerminal(terminal);
+		_terminals.put(terminal);
+		updateTerminal(terminal);
+	}
+
+	/**
+	 * Update the lookups of terminals with the communications and the
+	 * balance of a terminal.
+	 *
+	 * @param terminal the terminal
+	 */
+	void updateTerminal(Terminal terminal) {
+		if (terminal.isUnused()) {
+			_unusedTerminals.put(terminal.getKey(), terminal);
+		} else {
+			_unusedTerminals.remove(terminal.getKey());
+		}
+		if (terminal.hasPositiveBalance()) {
+			_positiveTerminals.put(terminal.getKey(), terminal);
+		} else {
+			_positiveTerminals.remove(terminal.getKey());
+		}
+	}
+
 	/**
 	 * Get a collection of all the terminals in the Network.
 	 * 
 	 * @return collection of all the terminals in the Network
 	 */
 	public Collection<Terminal> getAllTerminals() {
-		return _terminals.values();
+		return _terminals;
+	}
+
+	/**
+	 * Get the terminals without communications.
+	 *
+	 * @return collection of the unused terminals, sorted by key
+	 */
+	public Collection<Terminal> getUnusedTerminals() {
+		return Collections.unmodifiableCollection(_unusedTerminals.values());
+	}
+
+	/**
+	 * Get the terminals whose payments are larger than their debts.
+	 *
+	 * @return collection of the terminals with positive balance, sorted
+	 *         by key
+	 */
+	public Collection<Terminal> getTerminalsWithPositiveBalance() {
+		return Collections.unmodifiableCollection(
+						_positiveTerminals.values());
 	}
 
 	/**
@@ -487,6 +780,56 @@ public class Network implements Serializable {
 		return _communications;
 	}
 
+	/**
+	 * @return the store of the communications of the Network
+	 */
+	CommunicationStore getCommunicationStore() {
+		return _communications;
+	}
+
+	/**
+	 * Get a communication, which may have to be read from the snapshot
+	 * the Network was loaded from.
+	 *
+	 * @param key the key of the communication
+	 * @return the communication, or null if there is none with the key
+	 */
+	public Communication getCommunication(int key) {
+		return _communications.get(key);
+	}
+
+	/**
+	 * Keep in memory a communication which has been changed, so its
+	 * changes are not lost if it was read from the snapshot.
+	 *
+	 * @param communication the communication which has been changed
+	 */
+	public void keepCommunication(Communication communication) {
+		_communications.keep(communication);
+	}
+
+	/**
+	 * Release the snapshot the Network was loaded from. The
+	 * communications left in it can no longer be read.
+	 */
+	void close() {
+		_communications.close();
+	}
+
+	/**
+	 * @return the number of communications created in the Network
+	 */
+	int getCommunicationsCounter() {
+		return _communicationsCounter;
+	}
+
+	/**
+	 * @param counter the number of communications created in the Network
+	 */
+	void setCommunicationsCounter(int counter) {
+		_communicationsCounter = counter;
+	}
+
 	/**
 	 * Get a collection of the communications from a client.
 	 * 
@@ -498,16 +841,8 @@ public class Network implements Serializable {
 	public Collection<Communication> getCommunicationsFromClient(String key)
 									 throws UnknownClientKeyException {
 
-		Client client = getClient(key);
-		List<Communication> communications = new LinkedList<Communication>();
-		
-		client.getTerminals().forEach((terminal) -> communications.addAll
-								  (terminal.getStartedCommunications()));
-		
-		Collections.sort(communications,
-						 (comm1, comm2) -> comm1.getKey() - comm2.getKey());
-		
-		return communications;
+		return mergeCommunications(getClient(key),
+								   Terminal::getStartedCommunicationKeys);
 	}
 
 	/**
@@ -521,15 +856,51 @@ public class Network implements Serializable {
 	public Collection<Communication> getCommunicationsToClient(String key)
 									 throws UnknownClientKeyException {
 
-		Client client = getClient(key);
-		List<Communication> communications = new LinkedList<Communication>();
+		return mergeCommunications(getClient(key),
+								   Terminal::getReceivedCommunicationKeys);
+	}
 
-		client.getTerminals().forEach((terminal) -> communications.addAll
-								 (terminal.getReceivedCommunications()));
-		
-		Collections.sort(communications,
-						 (comm1, comm2) -> comm1.getKey() - comm2.getKey());
-		
+	/**
+	 * Merge the communications of the terminals of a client, in the
+	 * order of their keys. The keys of each terminal are already sorted,
+	 * so they are merged through a heap with the next key of each
+	 * terminal, instead of being sorted again.
+	 * 
+	 * @param client the client
+	 * @param keys   the sorted keys of the communications of a terminal
+	 * @return the list of the communications, in the order of their keys
+	 */
+	private List<Communication> mergeCommunications(Client client,
+								 Function<Terminal, int[]> keys) {
+
+		List<int[]> lists = new ArrayList<int[]>();
+		int size = 0;
+		for (Terminal terminal : client.getTerminals()) {
+			int[] list = keys.apply(terminal);
+			if (list.length > 0) {
+				lists.add(list);
+				size += list.length;
+			}
+		}
+
+		// each cursor is the index of a list and a position in it
+		PriorityQueue<int[]> heap = new PriorityQueue<int[]>(
+						Math.max(lists.size(), 1), (cursor1, cursor2) ->
+						Integer.compare(lists.get(cursor1[0])[cursor1[1]],
+										lists.get(cursor2[0])[cursor2[1]]));
+		for (int i = 0; i < lists.size(); i++) {
+			heap.add(new int[] { i, 0 });
+		}
+
+		List<Communication> communications = new ArrayList<Communication>(size);
+		while (!heap.isEmpty()) {
+			int[] cursor = heap.poll();
+			int[] list = lists.get(cursor[0]);
+			communications.add(getCommunication(list[cursor[1]]));
+			if (++cursor[1] < list.length) {
+				heap.add(cursor);
+			}
+		}
 		return communications;
 	}
 }
@@ -0,0 +1,280 @@
+package prr;
+
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import prr.clients.BusyToIdleNotification;
+import prr.clients.Client;
+import prr.clients.ClientType;
+import prr.clients.Notification;
+import prr.clients.OffToIdleNotification;
+import prr.clients.OffToSilentNotification;
+import prr.clients.SilentToIdleNotification;
+import prr.communications.Communication;
+import prr.communications.CommunicationColumns;
+import prr.terminals.BasicTerminal;
+import prr.terminals.FancyTerminal;
+import prr.terminals.Terminal;
+
+
+/**
+ * Builds a network from the plain values of a saved state.
+ *
+ * Clients and terminals are referred to by their ids, which are given in
+ * the order in which they are added. Whatever the format of a saved
+ * state, it is read into a builder, so the way the domain entities are
+ * rebuilt is kept in one place.
+ */
+public class NetworkBuilder {
+
+	/** Names of the client types. */
+	static final String[] CLIENT_TYPES = { "NORMAL", "GOLD", "PLATINUM" };
+
+	/** Names of the terminal types. */
+	static final String[] TERMINAL_TYPES = { "BASIC", "FANCY" };
+
+	/** Names of the terminal states. */
+	static final String[] TERMINAL_STATES =
+					{ "IDLE", "OFF", "SILENCE", "BUSY" };
+
+	/** Names of the notification types. */
+	static final String[] NOTIFICATION_TYPES = { "O2I", "O2S", "S2I", "B2I" };
+
+	/** Names of the communication types. */
+	static final String[] COMMUNICATION_TYPES = { "TEXT", "VOICE", "VIDEO" };
+
+	/** The network being built. */
+	private final Network _network = new Network();
+
+	/** The clients added so far, by id. */
+	private final List<Client> _clients = new ArrayList<Client>();
+
+	/** The terminals added so far, by id. */
+	private final List<Terminal> _terminals = new ArrayList<Terminal>();
+
+	/**
+	 * Add a client.
+	 *
+	 * @param key                  the key of the client
+	 * @param name                 the name of the client
+	 * @param taxId                the tax id of the client
+	 * @param type                 one of CLIENT_TYPES
+	 * @param textStreak           the streak of text communications
+	 * @param videoStreak          the streak of video communications
+	 * @param receiveNotifications if the client receives notifications
+	 * @param payments             the payments of the client, in Money
+	 * @param debts                the debts of the client, in Money
+	 * @return the id of the client
+	 */
+	public int addClient(String key, String name, int taxId, String type,
+			int textStreak, int videoStreak, boolean receiveNotifications,
+			long payments, long debts) {
+
+		Client client = new Client(key, name, taxId);
+		ClientType clientType = switch (type) {
+			case "NORMAL" -> ClientType.NORMAL;
+			case "GOLD" -> ClientType.GOLD;
+			case "PLATINUM" -> ClientType.PLATINUM;
+			default -> throw new IllegalArgumentException(type);
+		};
+		client.setType(clientType);
+		client.restoreStreaks(textStreak, videoStreak);
+		client.setReceiveNotifications(receiveNotifications);
+		client.restoreBalance(payments, debts);
+
+		_network.addClient(client);
+		_clients.add(client);
+		return _clients.size() - 1;
+	}
+
+	/**
+	 * Add a pending notification to a client. Notifications must be
+	 * added in the order in which they were delivered.
+	 *
+	 * @param client      the id of the client
+	 * @param type        one of NOTIFICATION_TYPES
+	 * @param terminalKey the key of the terminal the notification is about
+	 */
+	public void addNotification(int client, String type, String terminalKey) {
+		Notification notification = switch (type) {
+			case "O2I" -> new OffToIdleNotification(terminalKey);
+			case "O2S" -> new OffToSilentNotification(terminalKey);
+			case "S2I" -> new SilentToIdleNotification(terminalKey);
+			case "B2I" -> new BusyToIdleNotification(terminalKey);
+			default -> throw new IllegalArgumentException(type);
+		};
+		_clients.get(client).deliverNotification(notification);
+	}
+
+	/**
+	 * Add a terminal.
+	 *
+	 * @param type          one of TERMINAL_TYPES
+	 * @param key           the key of the terminal
+	 * @param client        the id of the owner of the terminal
+	 * @param state         one of TERMINAL_STATES
+	 * @param previousState the state before the terminal became busy,
+	 *                      or null
+	 * @param payments      the payments of the terminal, in Money
+	 * @param debts         the debts of the terminal, in Money
+	 * @return the id of the terminal
+	 */
+	public int addTerminal(String type, String key, int client, String state,
+			String previousState, long payments, long debts) {
+
+		Client owner = _clients.get(client);
+		Terminal terminal = switch (type) {
+			case "BASIC" -> new BasicTerminal(key, owner, "ON");
+			case "FANCY" -> new FancyTerminal(key, owner, "ON");
+			default -> throw new IllegalArgumentException(type);
+		};
+		terminal.restoreState(state, previousState);
+		terminal.restoreBalance(payments, debts);
+
+		_network.addTerminal(terminal);
+		_terminals.add(terminal);
+		return _terminals.size() - 1;
+	}
+
+	/**
+	 * @param terminal the id of a terminal
+	 * @param friend   the id of a friend of the terminal
+	 */
+	public void addFriend(int terminal, int friend) {
+		_terminals.get(terminal).restoreFriend(_terminals.get(friend));
+	}
+
+	/**
+	 * @param terminal the id of a terminal
+	 * @param client   the id of a client who tried to contact it
+	 */
+	public void addContactAttempt(int terminal, int client) {
+		_terminals.get(terminal).registerContactAttempt(_clients.get(client));
+	}
+
+	/**
+	 * Add a communication. Communications must be added in the order in
+	 * which they were created.
+	 *
+	 * @param type        one of COMMUNICATION_TYPES
+	 * @param key         the key of the communication
+	 * @param source      the id of the source terminal
+	 * @param destination the id of the destination terminal
+	 * @param inProgress  if the communication is in progress
+	 * @param paid        if the communication has been paid
+	 * @param cost        the cost of the communication, in Money
+	 * @param duration    the duration of an interactive communication
+	 * @param message     the message of a text communication
+	 */
+	public void addCommunication(String type, int key, int source,
+			int destination, boolean inProgress, boolean paid, long cost,
+			long duration, String message) {
+
+		byte columnsType = switch (type) {
+			case "TEXT" -> CommunicationColumns.TEXT;
+			case "VOICE" -> CommunicationColumns.VOICE;
+			case "VIDEO" -> CommunicationColumns.VIDEO;
+			default -> throw new IllegalArgumentException(type);
+		};
+		restoreCommunication(getColumns().add(columnsType, key,
+				_terminals.get(source), _terminals.get(destination),
+				inProgress, paid, cost, duration, message));
+	}
+
+	/**
+	 * Register a communication of the network in its terminals.
+	 *
+	 * @param communication the communication
+	 */
+	void restoreCommunication(Communication communication) {
+		communication.getSourceTerminal().restoreCommunication(communication);
+		communication.getDestinationTerminal().restoreCommunication(
+						communication);
+	}
+
+	/**
+	 * @return the table where the communications of the network are
+	 *         added, in the order of their keys
+	 */
+	CommunicationColumns getColumns() {
+		return _network.getCommunicationStore().getColumns();
+	}
+
+	/**
+	 * @param id the id of a terminal
+	 * @return the terminal
+	 */
+	Terminal getTerminal(int id) {
+		return _terminals.get(id);
+	}
+
+	/**
+	 * Add the keys of the communications of a terminal which are only
+	 * read when needed (see attachSegments).
+	 *
+	 * @param terminal the id of the terminal
+	 * @param started  the keys of the communications it started, in
+	 *                 increasing order
+	 * @param received the keys of the communications it received, in
+	 *                 increasing order
+	 */
+	public void addCommunicationKeys(int terminal, int[] started,
+			int[] received) {
+		_terminals.get(terminal).restoreCommunicationKeys(started, received);
+	}
+
+	/**
+	 * Add the keys of the communications of a terminal, without telling
+	 * which ones it started: the communications are read to find it out,
+	 * so the segments must already be attached.
+	 *
+	 * @param terminal the id of the terminal
+	 * @param keys     the keys of its communications
+	 */
+	void addCommunicationKeys(int terminal, int[] keys) {
+		Terminal owner = _terminals.get(terminal);
+		for (int key : keys) {
+			Communication communication = _network.getCommunication(key);
+			if (communication == null) {
+				throw new IllegalArgumentException("communication " + key);
+			}
+			owner.restoreCommunication(communication);
+		}
+	}
+
+	/**
+	 * Attach the segments of a snapshot with the communications which
+	 * are only read when needed. Every terminal must have been added.
+	 *
+	 * @param channel   the snapshot, which is then owned by the network
+	 * @param version   the version of the format of the snapshot
+	 * @param firstKeys the key of the first communication of each segment
+	 * @param counts    the number of communications of each segment
+	 * @param offsets   the offset of each segment in the snapshot
+	 * @param lengths   the length in bytes of each segment
+	 */
+	void attachSegments(FileChannel channel, int version, int[] firstKeys,
+			int[] counts, long[] offsets, int[] lengths) {
+		_network.getCommunicationStore().attach(channel, version, firstKeys,
+				counts, offsets, lengths, _terminals.toArray(new Terminal[0]));
+	}
+
+	/**
+	 * @param counter the number of communications created in the network
+	 */
+	public void setCommunicationsCounter(int counter) {
+		_network.setCommunicationsCounter(counter);
+	}
+
+	/**
+	 * @return the network which has been built, without pending changes
+	 */
+	public Network build() {
+		for (Terminal terminal : _terminals) {
+			_network.updateTerminal(terminal);
+		}
+		_network.setChanged(false);
+		return _network;
+	}
+}
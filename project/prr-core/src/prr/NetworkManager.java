@@ -2,12 +2,26 @@ package prr;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import prr.legacy.LegacyReader;
 import prr.exceptions.DuplicateClientKeyException;
 import prr.exceptions.DuplicateTerminalKeyException;
 import prr.exceptions.ImportFileException;
@@ -25,35 +39,147 @@ import prr.exceptions.UnrecognizedEntryException;
  */
 public class NetworkManager {
 
+	/**
+	 * Tells if import files are memory-mapped and parsed in place
+	 * (-Dimport.mapped=true).
+	 */
+	private static final boolean MAPPED_IMPORT =
+					 Boolean.getBoolean("import.mapped");
+
+	/**
+	 * First bytes of the files saved with Java serialization, before the
+	 * binary snapshot format.
+	 */
+	private static final int LEGACY_MAGIC = 0xACED;
+
+	/**
+	 * Tells if saves wait until the network is durably written
+	 * (-Dsave.durable=true).
+	 */
+	private static final boolean DURABLE_SAVE =
+					 Boolean.getBoolean("save.durable");
+
+	/**
+	 * Minimum size of a journal for it to be compacted into its snapshot.
+	 * A journal is only compacted once it is larger than its snapshot.
+	 */
+	private static final long COMPACTION_THRESHOLD = 1 << 20;
+
+	/**
+	 * Background thread where snapshots and journals are written, in
+	 * the order in which they are saved.
+	 */
+	private static final ExecutorService WRITER =
+					 Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "network-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Background thread where journals are compacted. */
+	private static final ExecutorService COMPACTOR =
+					 Executors.newSingleThreadExecutor(task -> {
+		Thread thread = new Thread(task, "journal-compactor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
 	/** The network itself. */
 	private Network _network = new Network();
 	private String _filename;
 
+	/**
+	 * Journal of the changes to the network since its snapshot, or null
+	 * if the next save must write a full snapshot.
+	 */
+	private Journal _journal;
+
+	/**
+	 * The saves being written in the background. Once a save fails,
+	 * the ones after it are not written either.
+	 */
+	private CompletableFuture<Void> _saving =
+					 CompletableFuture.completedFuture(null);
+
+	/** Size of the snapshot of the network (only used by the writer). */
+	private long _snapshotSize;
+
+	/**
+	 * Running compaction of the journal, whose result is the offset of
+	 * the journal up to which it has been compacted (only used by the
+	 * writer).
+	 */
+	private Future<Long> _compaction;
+
 	public Network getNetwork() {
 		return _network;
 	}
 
 	/**
-		 * @param filename name of the file containing the serialized
-		 *				   application's state to load.
+		 * @param filename name of the file containing the saved
+		 *				   application's state to load, either a binary
+		 *				   snapshot or a file saved with Java
+		 *				   serialization. The journal of a snapshot is
+		 *				   replayed on top of it.
 		 * @throws UnavailableFileException if the specified file does not
 		 *									exist or there is an error
 		 *									while processing this file.
 		 */
 	public void load(String filename) throws UnavailableFileException {
-		try (ObjectInputStream ois = new ObjectInputStream(
+		// pending saves may be writing this very file
+		awaitWriter();
+		awaitCompaction();
+
+		Network network = null;
+		Journal journal = null;
+		long snapshotSize;
+		try (DataInputStream in = new DataInputStream(
 					new BufferedInputStream(new FileInputStream(filename))) ) {
-			_network = (Network) ois.readObject();
-			_network.setChanged(false);
-			_filename = filename;
-		} catch (IOException | ClassNotFoundException e) {
+			in.mark(Integer.BYTES);
+			int magic = in.readInt();
+			if (magic == SnapshotCodec.MAGIC) {
+				SnapshotCodec.Header header = SnapshotCodec.readHeader(in);
+				network = SnapshotCodec.read(in, header, Path.of(filename));
+				journal = Journal.open(Journal.pathOf(filename),
+						header.getJournalId(), header.getJournalOffset(),
+						network);
+			} else if (magic >>> 16 == LEGACY_MAGIC) {
+				in.reset();
+				network = LegacyReader.read(in);
+			} else {
+				throw new StreamCorruptedException("unknown file format");
+			}
+			snapshotSize = Files.size(Path.of(filename));
+		} catch (IOException e) {
+			if (network != null) {
+				network.close();
+			}
 			throw new UnavailableFileException(filename);
 		}
+
+		detachJournal();
+		_network.close();
+		network.setJournal(journal);
+		network.setChanged(false);
+		_network = network;
+		_journal = journal;
+		_filename = filename;
+		_snapshotSize = snapshotSize;
 	}
 
 	/**
-		 * Saves the serialized application's state into the file
-		 * associated to the current network.
+		 * Saves the changes to the application's state into the file
+		 * associated to the current network. If the network has a
+		 * journal, only the operations performed since the last save are
+		 * appended to it (and, once it is large enough, the journal is
+		 * compacted into the snapshot in the background). Otherwise, a
+		 * binary snapshot of the whole network is written, with a new
+		 * journal.
+		 *
+		 * The state is captured right away, but it is written in the
+		 * background, unless saves are durable (-Dsave.durable=true): a
+		 * failure is then only reported by awaitSaved, and the next save
+		 * writes a full snapshot again.
 		 *
 		 * @throws FileNotFoundException if for some reason the file  
 		 *								 cannot be created or opened.
@@ -67,6 +193,10 @@ public class NetworkManager {
 			
 			MissingFileAssociationException, IOException {
 
+		if (_saving.isCompletedExceptionally()) {
+			awaitWriter();
+		}
+
 		if (!_network.getChanged()) {
 			return;
 		}
@@ -75,10 +205,31 @@ public class NetworkManager {
 			throw new MissingFileAssociationException();
 		}
 
-		try (ObjectOutputStream oos = new ObjectOutputStream(
-				  new BufferedOutputStream(new FileOutputStream(_filename))) ) {
-			oos.writeObject(_network);
-			_network.setChanged(false);
+		String filename = _filename;
+		Journal journal = _journal;
+		if (journal != null) {
+			byte[] records = journal.takePending();
+			write(() -> {
+				journal.append(records);
+				compactJournal(journal, filename);
+			});
+		} else {
+			long journalId = Journal.newId();
+			SnapshotCodec.Snapshot snapshot = SnapshotCodec.snapshot(_network,
+					new SnapshotCodec.Header(journalId, Journal.HEADER_SIZE));
+
+			Journal created = new Journal(Journal.pathOf(filename), journalId);
+			write(() -> {
+				_snapshotSize = writeSnapshot(snapshot::write, filename);
+				created.create();
+			});
+			_journal = created;
+			_network.setJournal(created);
+		}
+		_network.setChanged(false);
+
+		if (DURABLE_SAVE) {
+			awaitSaved();
 		}
 	}
 
@@ -98,11 +249,232 @@ public class NetworkManager {
 			throws FileNotFoundException,
 			MissingFileAssociationException, IOException {
 
-
+		detachJournal();
 		_filename = filename;
 		save();
 	}
 
+	/**
+	 * Wait until every save has been durably written.
+	 *
+	 * @throws IOException if some save could not be written (the network
+	 *					   is then considered changed, so it is saved
+	 *					   again by the next save)
+	 */
+	public void awaitSaved() throws IOException {
+		IOException failure = awaitWriter();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * A task of the writer.
+	 */
+	@FunctionalInterface
+	private interface WriteTask {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Write in the background, after the saves which are already being
+	 * written (and only if they succeed).
+	 *
+	 * @param task the task which writes the save
+	 */
+	private void write(WriteTask task) {
+		_saving = _saving.thenRunAsync(() -> {
+			try {
+				task.run();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, WRITER);
+	}
+
+	/**
+	 * Wait for the saves being written. If a save has failed, what it
+	 * would have written is lost, so the network is considered changed
+	 * and its journal is dropped: the next save writes a full snapshot.
+	 *
+	 * @return the failure of the saves, or null if they have succeeded
+	 */
+	private IOException awaitWriter() {
+		IOException failure = null;
+		try {
+			_saving.join();
+		} catch (CompletionException e) {
+			failure = e.getCause() instanceof UncheckedIOException unchecked
+					  ? unchecked.getCause() : new IOException(e.getCause());
+		}
+		_saving = CompletableFuture.completedFuture(null);
+
+		if (failure != null) {
+			detachJournal();
+			_network.setChanged(true);
+		}
+		return failure;
+	}
+
+	/**
+	 * Encoder of a snapshot, which writes it to a stream.
+	 */
+	@FunctionalInterface
+	private interface SnapshotEncoder {
+		long write(OutputStream out) throws IOException;
+	}
+
+	/**
+	 * Write a snapshot, replacing the file atomically. The snapshot is
+	 * encoded straight into a temporary file.
+	 *
+	 * @param snapshot the encoder of the snapshot
+	 * @param filename the name of the file
+	 * @return the size of the snapshot
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	private static long writeSnapshot(SnapshotEncoder snapshot,
+			String filename) throws IOException {
+
+		Path temporary = Path.of(filename + ".tmp");
+		long size;
+		try (FileOutputStream out = new FileOutputStream(temporary.toFile())) {
+			size = snapshot.write(new BufferedOutputStream(out, 1 << 16));
+			out.getFD().sync();
+		}
+		Files.move(temporary, Path.of(filename),
+				   StandardCopyOption.REPLACE_EXISTING,
+				   StandardCopyOption.ATOMIC_MOVE);
+		return size;
+	}
+
+	/**
+	 * Finish a completed compaction, by rotating the journal, and start
+	 * a new one if the journal has grown larger than its snapshot. Only
+	 * called by the writer.
+	 *
+	 * @param journal  the journal of the snapshot
+	 * @param filename the name of the snapshot file
+	 * @throws IOException if the journal cannot be rotated
+	 */
+	private void compactJournal(Journal journal, String filename)
+			throws IOException {
+
+		if (_compaction != null) {
+			if (!_compaction.isDone()) {
+				return;
+			}
+			try {
+				long offset = _compaction.get();
+				journal.rotate(offset);
+				_snapshotSize = Files.size(Path.of(filename));
+			} catch (ExecutionException e) {
+				// the snapshot was left as it was: compact it again later
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			_compaction = null;
+		}
+
+		if (journal.size() > Math.max(COMPACTION_THRESHOLD, _snapshotSize)) {
+			long journalId = journal.getId();
+			long end = journal.size();
+			_compaction = COMPACTOR.submit(
+							() -> compact(filename, journalId, end));
+		}
+	}
+
+	/**
+	 * Compact a journal into its snapshot, replaying it on a network read
+	 * from the files (so the current network is never accessed) and
+	 * writing a new snapshot which continues the journal from the end of
+	 * the compacted records.
+	 *
+	 * @param filename  the name of the snapshot file
+	 * @param journalId the id of the journal
+	 * @param end       the offset after the last record to compact
+	 * @return the offset up to which the journal has been compacted
+	 * @throws IOException if the files cannot be read or written
+	 */
+	private static long compact(String filename, long journalId, long end)
+			throws IOException {
+
+		SnapshotCodec.Header header;
+		Network network;
+		try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(filename))) ) {
+			if (in.readInt() != SnapshotCodec.MAGIC) {
+				throw new StreamCorruptedException("not a snapshot");
+			}
+			header = SnapshotCodec.readHeader(in);
+			network = SnapshotCodec.read(in, header, Path.of(filename));
+		}
+
+		try {
+			return compact(network, header, filename, journalId, end);
+		} finally {
+			network.close();
+		}
+	}
+
+	/**
+	 * Compact a journal into a network read from its snapshot.
+	 */
+	private static long compact(Network network, SnapshotCodec.Header header,
+			String filename, long journalId, long end) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(Journal.pathOf(filename),
+											StandardOpenOption.READ)) {
+			long[] journalHeader = Journal.readHeader(channel);
+			long start = Journal.startOf(journalHeader,
+					header.getJournalId(), header.getJournalOffset());
+			if (journalHeader[0] != journalId || start < 0 ||
+					Journal.replay(channel, start, end, network) != end) {
+				throw new StreamCorruptedException("journal has changed");
+			}
+		}
+
+		SnapshotCodec.Header snapshotHeader =
+						new SnapshotCodec.Header(journalId, end);
+		writeSnapshot(out -> SnapshotCodec.write(network, snapshotHeader, out),
+					  filename);
+		return end;
+	}
+
+	/**
+	 * Stop recording the changes to the network in its journal, so the
+	 * next save writes a full snapshot. The journal is only closed once
+	 * the saves being written and its compaction are done with it.
+	 */
+	private void detachJournal() {
+		if (_journal != null) {
+			Journal journal = _journal;
+			_journal = null;
+			_network.setJournal(null);
+			awaitWriter();
+			awaitCompaction();
+			journal.close();
+		}
+	}
+
+	/**
+	 * Wait for the running compaction, if any, to finish, without
+	 * rotating the journal (it is being discarded).
+	 */
+	private void awaitCompaction() {
+		if (_compaction == null) {
+			return;
+		}
+		try {
+			_compaction.get();
+		} catch (ExecutionException e) {
+			// the snapshot was left as it was
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		_compaction = null;
+	}
+
 	/**
 	 * Read text input file and create domain entities.
 	 *
@@ -110,8 +482,37 @@ public class NetworkManager {
 	 * @throws ImportFileException
 	 */
 	public void importFile(String filename) throws ImportFileException {
+		// imported entities are not journaled
+		detachJournal();
+		try {
+			_network.importFile(filename, MAPPED_IMPORT, null);
+		} catch (
+				IOException
+				| UnrecognizedEntryException
+				| DuplicateClientKeyException
+				| UnknownTerminalKeyException
+				| UnknownClientKeyException
+				| InvalidTerminalKeyException
+				| DuplicateTerminalKeyException e) {
+			throw new ImportFileException(filename, e);
+		}
+	}
+
+	/**
+	 * Read text input file and create domain entities, without stopping
+	 * at rejected entries: every valid entry is imported and the
+	 * rejected ones are collected in the returned report.
+	 *
+	 * @param filename name of the text input file
+	 * @return the report of the rejected entries
+	 * @throws ImportFileException if the file cannot be read
+	 */
+	public ImportReport importFileWithReport(String filename)
+			throws ImportFileException {
+		ImportReport report = new ImportReport();
+		detachJournal();
 		try {
-			_network.importFile(filename);
+			_network.importFile(filename, MAPPED_IMPORT, report);
 		} catch (
 				IOException
 				| UnrecognizedEntryException
@@ -122,5 +523,6 @@ public class NetworkManager {
 				| DuplicateTerminalKeyException e) {
 			throw new ImportFileException(filename, e);
 		}
+		return report;
 	}
 }
@@ -0,0 +1,764 @@
+package prr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import prr.clients.Client;
+import prr.clients.ClientType;
+import prr.clients.Money;
+import prr.clients.BusyToIdleNotification;
+import prr.clients.Notification;
+import prr.clients.OffToIdleNotification;
+import prr.clients.OffToSilentNotification;
+import prr.clients.SilentToIdleNotification;
+import prr.communications.Communication;
+import prr.communications.CommunicationColumns;
+import prr.communications.InteractiveCommunication;
+import prr.communications.TextCommunication;
+import prr.communications.VoiceCommunication;
+import prr.terminals.FancyTerminal;
+import prr.terminals.Terminal;
+import prr.terminals.TerminalState;
+
+
+/**
+ * Binary format of the saved state of a network.
+ *
+ * A snapshot starts with a magic number and a version, followed by the
+ * id of the journal it continues and the offset of the first record of
+ * that journal which is not included in it (version 1 snapshots have no
+ * journal), a table with every key and name, the clients, the terminals and the
+ * communications. Strings are written once and referred to by their
+ * index in the table, and clients and terminals are referred to by their
+ * ids (their positions in the snapshot), so no object graph is kept.
+ * Types and states are written as the index of their name in the
+ * constants of NetworkBuilder.
+ *
+ * Since version 3, only the communications in progress are written with
+ * the rest of the network: the others follow in segments of
+ * CommunicationStore.SEGMENT_SIZE communications, which are read when
+ * needed. Each terminal lists the keys of its communications (since
+ * version 4, the ones it started and then the ones it received), and the
+ * snapshot ends with an index of the segments and its offset.
+ *
+ * Since version 5, amounts of money are written as longs (see Money);
+ * the doubles of older snapshots are converted when they are read.
+ *
+ * Since version 6, each communication has the type of its client and
+ * whether its destination was a friend when it was charged (see
+ * Communication.setRating); they are not known in older snapshots.
+ */
+class SnapshotCodec {
+
+	/** Magic number which starts every snapshot ("PRRS"). */
+	static final int MAGIC = 0x50525253;
+
+	/** Version of the format written by this codec. */
+	static final int VERSION = 6;
+
+	/** First version of the format with a journal. */
+	private static final int JOURNAL_VERSION = 2;
+
+	/** First version of the format with segments of communications. */
+	private static final int SEGMENTS_VERSION = 3;
+
+	/**
+	 * First version of the format where the keys of the communications
+	 * started and received by each terminal are written apart.
+	 */
+	private static final int DIRECTIONS_VERSION = 4;
+
+	/** First version of the format with fixed-point amounts of money. */
+	private static final int MONEY_VERSION = 5;
+
+	/** First version of the format with the ratings of communications. */
+	private static final int RATING_VERSION = 6;
+
+	/** Flag of a communication in progress. */
+	private static final int IN_PROGRESS = 1;
+
+	/** Flag of a paid communication. */
+	private static final int PAID = 2;
+
+	private SnapshotCodec() {
+		// static methods only
+	}
+
+	/**
+	 * Stream which counts the bytes written through it, so offsets in
+	 * snapshots larger than 2 GiB are right (DataOutputStream.size()
+	 * stops at Integer.MAX_VALUE).
+	 */
+	static class CountingOutputStream extends FilterOutputStream {
+
+		/** Number of bytes written. */
+		private long _count;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		/**
+		 * @return the number of bytes written
+		 */
+		long getCount() {
+			return _count;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			_count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			_count += len;
+		}
+	}
+
+	/**
+	 * Header of a snapshot.
+	 */
+	static class Header {
+
+		/** Version of the format of the snapshot. */
+		private final int _version;
+
+		/** Id of the journal continued by the snapshot, or 0. */
+		private final long _journalId;
+
+		/** Offset of the first record of the journal not in the snapshot. */
+		private final long _journalOffset;
+
+		/**
+		 * @param journalId     the id of the journal continued by the
+		 *                      snapshot, or 0
+		 * @param journalOffset the offset of the first record of the
+		 *                      journal not included in the snapshot
+		 */
+		Header(long journalId, long journalOffset) {
+			this(VERSION, journalId, journalOffset);
+		}
+
+		private Header(int version, long journalId, long journalOffset) {
+			_version = version;
+			_journalId = journalId;
+			_journalOffset = journalOffset;
+		}
+
+		/**
+		 * @return the version of the format of the snapshot
+		 */
+		int getVersion() {
+			return _version;
+		}
+
+		/**
+		 * @return the id of the journal continued by the snapshot, or 0
+		 */
+		long getJournalId() {
+			return _journalId;
+		}
+
+		/**
+		 * @return the offset of the first record of the journal not
+		 *         included in the snapshot
+		 */
+		long getJournalOffset() {
+			return _journalOffset;
+		}
+	}
+
+	/**
+	 * Write a snapshot of a network.
+	 *
+	 * @param network the network to be written
+	 * @param header  the header of the snapshot
+	 * @param stream  the stream to write to, which must be at the start
+	 *                of the file (offsets are counted from there)
+	 * @return the number of bytes written
+	 * @throws IOException if there is an error while writing
+	 */
+	static long write(Network network, Header header, OutputStream stream)
+			throws IOException {
+		return new Snapshot(network, header, network.getCommunicationStore())
+				.write(stream);
+	}
+
+	/**
+	 * Take a snapshot of a network, which can be written later, by
+	 * another thread, while the network goes on being changed. Everything
+	 * but the communications which are complete is encoded right away;
+	 * those are kept in a view of the communications of the network
+	 * (see CommunicationStore.view()).
+	 *
+	 * @param network the network
+	 * @param header  the header of the snapshot
+	 * @return the snapshot, to be written
+	 * @throws IOException if the network cannot be encoded
+	 */
+	static Snapshot snapshot(Network network, Header header)
+			throws IOException {
+		return new Snapshot(network, header,
+							network.getCommunicationStore().view());
+	}
+
+	/**
+	 * Snapshot of a network, to be written.
+	 */
+	static class Snapshot {
+
+		/**
+		 * The encoding of the network up to the communications which are
+		 * complete.
+		 */
+		private final byte[] _head;
+
+		/** The communications of the network. */
+		private final CommunicationStore _communications;
+
+		/** The ids of the terminals in the snapshot. */
+		private final Map<Terminal, Integer> _terminalIds =
+						new IdentityHashMap<Terminal, Integer>();
+
+		private Snapshot(Network network, Header header,
+				CommunicationStore communications) throws IOException {
+			_communications = communications;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			writeHead(network, header, new DataOutputStream(bytes));
+			_head = bytes.toByteArray();
+		}
+
+		/**
+		 * Write everything but the communications which are complete.
+		 */
+		private void writeHead(Network network, Header header,
+				DataOutputStream out) throws IOException {
+
+			Map<String, Integer> strings = new HashMap<String, Integer>();
+			List<String> table = new ArrayList<String>();
+			Map<Client, Integer> clientIds =
+							new IdentityHashMap<Client, Integer>();
+
+			for (Client client : network.getAllClients()) {
+				intern(client.getKey(), strings, table);
+				intern(client.getName(), strings, table);
+				for (Notification notification : client.getNotifications()) {
+					intern(notification.getTerminalKey(), strings, table);
+				}
+				clientIds.put(client, clientIds.size());
+			}
+			for (Terminal terminal : network.getAllTerminals()) {
+				intern(terminal.getKey(), strings, table);
+				_terminalIds.put(terminal, _terminalIds.size());
+			}
+
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(header.getJournalId());
+			out.writeLong(header.getJournalOffset());
+
+			out.writeInt(table.size());
+			for (String string : table) {
+				writeString(string, out);
+			}
+
+			out.writeInt(clientIds.size());
+			for (Client client : network.getAllClients()) {
+				out.writeInt(strings.get(client.getKey()));
+				out.writeInt(strings.get(client.getName()));
+				out.writeInt(client.getTaxId());
+				out.writeByte(indexOf(client.getType().toString(),
+									  NetworkBuilder.CLIENT_TYPES));
+				out.writeInt(client.getTextCommStreak());
+				out.writeInt(client.getVideoCommStreak());
+				out.writeBoolean(client.canReceiveNotifications());
+				out.writeLong(client.getPayments());
+				out.writeLong(client.getDebts());
+
+				List<Notification> notifications = client.getNotifications();
+				out.writeInt(notifications.size());
+				for (Notification notification : notifications) {
+					out.writeByte(notificationType(notification));
+					out.writeInt(strings.get(notification.getTerminalKey()));
+				}
+			}
+
+			out.writeInt(_terminalIds.size());
+			for (Terminal terminal : network.getAllTerminals()) {
+				TerminalState state = terminal.getState();
+				TerminalState previous = terminal.getPreviousState();
+
+				out.writeByte(terminal instanceof FancyTerminal ? 1 : 0);
+				out.writeInt(strings.get(terminal.getKey()));
+				out.writeInt(clientIds.get(terminal.getClient()));
+				out.writeByte(indexOf(state.toString(),
+									  NetworkBuilder.TERMINAL_STATES));
+				out.writeByte(previous == null ? -1
+						: indexOf(previous.toString(),
+								  NetworkBuilder.TERMINAL_STATES));
+				out.writeLong(terminal.getPayments());
+				out.writeLong(terminal.getDebts());
+
+				out.writeInt(terminal.getFriends().size());
+				for (Terminal friend : terminal.getFriends()) {
+					out.writeInt(_terminalIds.get(friend));
+				}
+				out.writeInt(terminal.getContactAttempts().size());
+				for (Client client : terminal.getContactAttempts()) {
+					out.writeInt(clientIds.get(client));
+				}
+				writeKeys(terminal.getStartedCommunicationKeys(), out);
+				writeKeys(terminal.getReceivedCommunicationKeys(), out);
+			}
+
+			out.writeInt(network.getCommunicationsCounter());
+			CommunicationStore store = network.getCommunicationStore();
+			List<Communication> inProgress = store.inProgress();
+			out.writeInt(inProgress.size());
+			for (Communication communication : inProgress) {
+				writeCommunication(communication, _terminalIds, out);
+			}
+		}
+
+		/**
+		 * Write the snapshot.
+		 *
+		 * @param stream the stream to write to, which must be at the
+		 *               start of the file (offsets are counted from there)
+		 * @return the number of bytes written
+		 * @throws IOException if there is an error while writing
+		 */
+		long write(OutputStream stream) throws IOException {
+			CountingOutputStream counter = new CountingOutputStream(stream);
+			DataOutputStream out = new DataOutputStream(counter);
+			out.write(_head);
+
+			// first key, number of communications and offset of each
+			// segment
+			List<long[]> segments = new ArrayList<long[]>();
+			long[] segment = null;
+			for (Communication communication : _communications) {
+				if (communication.getInProgress()) {
+					continue;
+				}
+				if (segment == null ||
+						segment[1] == CommunicationStore.SEGMENT_SIZE) {
+					segment = new long[] { communication.getKey(), 0,
+										   counter.getCount() };
+					segments.add(segment);
+				}
+				writeCommunication(communication, _terminalIds, out);
+				segment[1]++;
+			}
+
+			long indexOffset = counter.getCount();
+			out.writeInt(segments.size());
+			for (int i = 0; i < segments.size(); i++) {
+				long end = i + 1 < segments.size() ? segments.get(i + 1)[2]
+												   : indexOffset;
+				segment = segments.get(i);
+				if (end - segment[2] > Integer.MAX_VALUE) {
+					throw new IOException("segment of communication "
+							+ segment[0] + " is larger than 2 GiB");
+				}
+				out.writeInt((int) segment[0]);
+				out.writeInt((int) segment[1]);
+				out.writeLong(segment[2]);
+				out.writeInt((int) (end - segment[2]));
+			}
+			out.writeLong(indexOffset);
+			out.flush();
+			return counter.getCount();
+		}
+	}
+
+	/**
+	 * Write a communication.
+	 */
+	private static void writeCommunication(Communication communication,
+			Map<Terminal, Integer> terminalIds, DataOutputStream out)
+			throws IOException {
+		out.writeByte(communicationType(communication));
+		out.writeInt(communication.getKey());
+		out.writeInt(terminalIds.get(communication.getSourceTerminal()));
+		out.writeInt(terminalIds.get(communication.getDestinationTerminal()));
+		out.writeByte((communication.getInProgress() ? IN_PROGRESS : 0)
+					  | (communication.getPaid() ? PAID : 0));
+		out.writeLong(communication.getCost());
+		ClientType rated = communication.getRatedType();
+		out.writeByte(rated == null ? -1 : indexOf(rated.toString(),
+												   NetworkBuilder.CLIENT_TYPES));
+		out.writeBoolean(rated != null && communication.isRatedAsFriend());
+		if (communication instanceof InteractiveCommunication interactive) {
+			out.writeLong(interactive.getDuration());
+		} else {
+			writeString(((TextCommunication) communication).getMessage(), out);
+		}
+	}
+
+	/**
+	 * Read a communication written by writeCommunication, into a table
+	 * of communications.
+	 *
+	 * @param in        the stream to read from
+	 * @param version   the version of the format of the snapshot
+	 * @param columns   the table where the communication is added
+	 * @param terminals the terminals of the snapshot, by id
+	 * @return the communication which has been read
+	 * @throws IOException if there is an error while reading or the
+	 *                     communication is not valid
+	 */
+	static Communication readCommunication(DataInputStream in, int version,
+			CommunicationColumns columns, IntFunction<Terminal> terminals)
+			throws IOException {
+		try {
+			byte type = in.readByte();
+			int key = in.readInt();
+			Terminal source = terminals.apply(in.readInt());
+			Terminal destination = terminals.apply(in.readInt());
+			int flags = in.readByte();
+			long cost = readMoney(in, version);
+			int ratedType = -1;
+			boolean ratedAsFriend = false;
+			if (version >= RATING_VERSION) {
+				ratedType = in.readByte();
+				ratedAsFriend = in.readBoolean();
+			}
+			long duration = 0;
+			String message = null;
+			if (type == CommunicationColumns.TEXT) {
+				message = readString(in);
+			} else {
+				duration = in.readLong();
+			}
+			Communication communication = columns.add(type, key, source,
+					destination, (flags & IN_PROGRESS) != 0,
+					(flags & PAID) != 0, cost, duration, message);
+			if (ratedType >= 0) {
+				communication.setRating(ClientType.valueOf(
+						NetworkBuilder.CLIENT_TYPES[ratedType]), ratedAsFriend);
+			}
+			return communication;
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			throw new StreamCorruptedException(e.toString());
+		}
+	}
+
+	/**
+	 * Read the header of a snapshot. The magic number must already have
+	 * been read.
+	 *
+	 * @param in the stream to read from
+	 * @return the header of the snapshot
+	 * @throws IOException if there is an error while reading or the
+	 *                     version of the snapshot is not supported
+	 */
+	static Header readHeader(DataInputStream in) throws IOException {
+		int version = in.readShort();
+		if (version < 1 || version > VERSION) {
+			throw new StreamCorruptedException(
+							"unsupported snapshot version " + version);
+		}
+		if (version < JOURNAL_VERSION) {
+			return new Header(version, 0, 0);
+		}
+		return new Header(version, in.readLong(), in.readLong());
+	}
+
+	/**
+	 * Read the network of a snapshot, after its header. The segments of
+	 * communications are not read: the network keeps the snapshot open
+	 * to read them when needed, until it is closed.
+	 *
+	 * @param in     the stream to read from
+	 * @param header the header of the snapshot
+	 * @param path   the snapshot file
+	 * @return the network which has been read
+	 * @throws IOException if there is an error while reading or the
+	 *                     snapshot is not valid
+	 */
+	static Network read(DataInputStream in, Header header, Path path)
+			throws IOException {
+		try {
+			String[] table = new String[in.readInt()];
+			for (int i = 0; i < table.length; i++) {
+				table[i] = readString(in);
+			}
+
+			NetworkBuilder builder = new NetworkBuilder();
+
+			int clients = in.readInt();
+			for (int i = 0; i < clients; i++) {
+				int client = builder.addClient(table[in.readInt()],
+						table[in.readInt()], in.readInt(),
+						NetworkBuilder.CLIENT_TYPES[in.readByte()],
+						in.readInt(), in.readInt(), in.readBoolean(),
+						readMoney(in, header.getVersion()),
+						readMoney(in, header.getVersion()));
+
+				int notifications = in.readInt();
+				for (int j = 0; j < notifications; j++) {
+					builder.addNotification(client,
+							NetworkBuilder.NOTIFICATION_TYPES[in.readByte()],
+							table[in.readInt()]);
+				}
+			}
+
+			int terminals = in.readInt();
+			int[][] friends = new int[terminals][];
+			int[][] keys = new int[terminals][];
+			for (int i = 0; i < terminals; i++) {
+				String type = NetworkBuilder.TERMINAL_TYPES[in.readByte()];
+				String key = table[in.readInt()];
+				int client = in.readInt();
+				String state = NetworkBuilder.TERMINAL_STATES[in.readByte()];
+				int previous = in.readByte();
+				builder.addTerminal(type, key, client, state, previous < 0 ?
+						null : NetworkBuilder.TERMINAL_STATES[previous],
+						readMoney(in, header.getVersion()),
+						readMoney(in, header.getVersion()));
+
+				friends[i] = new int[in.readInt()];
+				for (int j = 0; j < friends[i].length; j++) {
+					friends[i][j] = in.readInt();
+				}
+				int attempts = in.readInt();
+				for (int j = 0; j < attempts; j++) {
+					builder.addContactAttempt(i, in.readInt());
+				}
+				if (header.getVersion() >= DIRECTIONS_VERSION) {
+					builder.addCommunicationKeys(i, readKeys(in),
+												 readKeys(in));
+				} else if (header.getVersion() >= SEGMENTS_VERSION) {
+					keys[i] = readKeys(in);
+				}
+			}
+			for (int i = 0; i < terminals; i++) {
+				for (int friend : friends[i]) {
+					builder.addFriend(i, friend);
+				}
+			}
+
+			builder.setCommunicationsCounter(in.readInt());
+			int communications = in.readInt();
+			for (int i = 0; i < communications; i++) {
+				builder.restoreCommunication(readCommunication(in,
+						header.getVersion(), builder.getColumns(),
+						builder::getTerminal));
+			}
+
+			if (header.getVersion() >= SEGMENTS_VERSION) {
+				readSegments(builder, header.getVersion(), path);
+			}
+			if (header.getVersion() < DIRECTIONS_VERSION) {
+				for (int i = 0; i < terminals; i++) {
+					if (keys[i] != null) {
+						builder.addCommunicationKeys(i, keys[i]);
+					}
+				}
+			}
+			return builder.build();
+		} catch (IndexOutOfBoundsException | NegativeArraySizeException
+				| IllegalArgumentException e) {
+			throw new StreamCorruptedException(e.toString());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Read the index of the segments of communications at the end of a
+	 * snapshot, and attach them to the network being built.
+	 */
+	private static void readSegments(NetworkBuilder builder, int version,
+			Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			long indexOffset = readFully(channel, size - Long.BYTES,
+										 Long.BYTES).getLong();
+			if (indexOffset < 0 || indexOffset > size - Long.BYTES
+					- Integer.BYTES) {
+				throw new StreamCorruptedException("invalid segment index");
+			}
+			ByteBuffer index = readFully(channel, indexOffset,
+					(int) (size - Long.BYTES - indexOffset));
+
+			int count = index.getInt();
+			if (count < 0 || count > index.remaining() / 20) {
+				throw new StreamCorruptedException("invalid segment index");
+			}
+			int[] firstKeys = new int[count];
+			int[] counts = new int[count];
+			long[] offsets = new long[count];
+			int[] lengths = new int[count];
+			for (int i = 0; i < count; i++) {
+				firstKeys[i] = index.getInt();
+				counts[i] = index.getInt();
+				offsets[i] = index.getLong();
+				lengths[i] = index.getInt();
+				if (counts[i] < 0 || offsets[i] < 0 || lengths[i] < 0 ||
+						offsets[i] + lengths[i] > indexOffset ||
+						(i > 0 && firstKeys[i] <= firstKeys[i - 1])) {
+					throw new StreamCorruptedException("invalid segment index");
+				}
+			}
+			builder.attachSegments(channel, version, firstKeys, counts,
+								   offsets, lengths);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read a range of a file.
+	 */
+	private static ByteBuffer readFully(FileChannel channel, long position,
+			int length) throws IOException {
+		if (position < 0 || length < 0) {
+			throw new StreamCorruptedException("invalid offset");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		return buffer.flip();
+	}
+
+	/**
+	 * Read an amount of money, which snapshots older than MONEY_VERSION
+	 * have as a double.
+	 */
+	private static long readMoney(DataInputStream in, int version)
+			throws IOException {
+		if (version < MONEY_VERSION) {
+			return Money.fromDouble(in.readDouble());
+		}
+		return in.readLong();
+	}
+
+	/**
+	 * Write a list of keys.
+	 */
+	private static void writeKeys(int[] keys, DataOutputStream out)
+			throws IOException {
+		out.writeInt(keys.length);
+		for (int key : keys) {
+			out.writeInt(key);
+		}
+	}
+
+	/**
+	 * Read a list of keys written by writeKeys.
+	 */
+	private static int[] readKeys(DataInputStream in) throws IOException {
+		int[] keys = new int[in.readInt()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = in.readInt();
+		}
+		return keys;
+	}
+
+	/**
+	 * Add a string to the string table, if it is not there yet.
+	 */
+	private static void intern(String string, Map<String, Integer> strings,
+			List<String> table) {
+		if (strings.putIfAbsent(string, table.size()) == null) {
+			table.add(string);
+		}
+	}
+
+	/**
+	 * @return the index of the type of a notification in
+	 *         NetworkBuilder.NOTIFICATION_TYPES
+	 */
+	private static int notificationType(Notification notification) {
+		if (notification instanceof OffToIdleNotification) {
+			return 0;
+		} else if (notification instanceof OffToSilentNotification) {
+			return 1;
+		} else if (notification instanceof SilentToIdleNotification) {
+			return 2;
+		} else if (notification instanceof BusyToIdleNotification) {
+			return 3;
+		}
+		throw new IllegalArgumentException(notification.getClass().getName());
+	}
+
+	/**
+	 * @return the index of the type of a communication in
+	 *         NetworkBuilder.COMMUNICATION_TYPES, which is also its type
+	 *         in CommunicationColumns
+	 */
+	private static int communicationType(Communication communication) {
+		if (communication instanceof TextCommunication) {
+			return CommunicationColumns.TEXT;
+		} else if (communication instanceof VoiceCommunication) {
+			return CommunicationColumns.VOICE;
+		}
+		return CommunicationColumns.VIDEO;
+	}
+
+	/**
+	 * @return the index of a name in a list of names
+	 */
+	private static int indexOf(String name, String[] names) {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equals(name)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	/**
+	 * Write a string as its length followed by its UTF-8 bytes (unlike
+	 * writeUTF, strings are not limited to 64K bytes).
+	 */
+	private static void writeString(String string, DataOutputStream out)
+			throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a string written by writeString.
+	 */
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new StreamCorruptedException("negative string length");
+		}
+		byte[] bytes = in.readNBytes(length);
+		if (bytes.length < length) {
+			throw new EOFException();
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
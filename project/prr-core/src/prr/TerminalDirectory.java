@@ -0,0 +1,172 @@
+package prr;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import prr.terminals.Terminal;
+
+
+/**
+ * Directory of the terminals of a network, by key.
+ *
+ * Terminal keys are made of exactly KEY_LENGTH decimal digits, so each
+ * key is parsed once into its numeric value, which is the index of the
+ * terminal in a flat table of every possible key. The table is split in
+ * pages which are only allocated once they have a terminal. Since keys
+ * have the same length, the numeric order is the order of the keys.
+ * Parallel streams split an array with the terminals, which is only
+ * rebuilt after terminals have been added.
+ */
+class TerminalDirectory extends AbstractCollection<Terminal> {
+
+	/** Number of digits of a terminal key. */
+	static final int KEY_LENGTH = 6;
+
+	/** Number of possible terminal keys. */
+	private static final int CAPACITY = 1_000_000;
+
+	/** Number of terminals in a page. */
+	private static final int PAGE_SIZE = 1000;
+
+	/** The pages of terminals, null until they have a terminal. */
+	private final Terminal[][] _pages =
+					new Terminal[CAPACITY / PAGE_SIZE][];
+
+	/** Number of terminals in the directory. */
+	private int _size = 0;
+
+	/** The terminals in the order of their keys, or null if outdated. */
+	private Terminal[] _sorted;
+
+	/**
+	 * Get the index of a terminal key, which is its numeric value.
+	 *
+	 * @param key the terminal key
+	 * @return the index of the key, or -1 if it is not a valid key
+	 */
+	static int indexOf(String key) {
+		if (key.length() != KEY_LENGTH) {
+			return -1;
+		}
+		int index = 0;
+		for (int i = 0; i < KEY_LENGTH; i++) {
+			char digit = key.charAt(i);
+			if (digit < '0' || digit > '9') {
+				return -1;
+			}
+			index = index * 10 + (digit - '0');
+		}
+		return index;
+	}
+
+	/**
+	 * @param key the key of a terminal
+	 * @return the terminal with the key, or null if there is none
+	 */
+	Terminal get(String key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		Terminal[] page = _pages[index / PAGE_SIZE];
+		return page == null ? null : page[index % PAGE_SIZE];
+	}
+
+	/**
+	 * @param key the key of a terminal
+	 * @return true if there is a terminal with the key
+	 */
+	boolean containsKey(String key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Add a terminal, replacing the one with the same key, if any.
+	 *
+	 * @param terminal the terminal, whose key must be valid
+	 */
+	void put(Terminal terminal) {
+		int index = indexOf(terminal.getKey());
+		if (index < 0) {
+			throw new IllegalArgumentException(
+							"invalid terminal key " + terminal.getKey());
+		}
+		Terminal[] page = _pages[index / PAGE_SIZE];
+		if (page == null) {
+			page = new Terminal[PAGE_SIZE];
+			_pages[index / PAGE_SIZE] = page;
+		}
+		if (page[index % PAGE_SIZE] == null) {
+			_size++;
+		}
+		page[index % PAGE_SIZE] = terminal;
+		_sorted = null;
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Iterate over the terminals in the order of their keys.
+	 */
+	@Override
+	public Iterator<Terminal> iterator() {
+		return new Iterator<Terminal>() {
+			private int _next = advance(0);
+
+			@Override
+			public boolean hasNext() {
+				return _next < CAPACITY;
+			}
+
+			@Override
+			public Terminal next() {
+				if (_next == CAPACITY) {
+					throw new NoSuchElementException();
+				}
+				Terminal terminal = _pages[_next / PAGE_SIZE][_next % PAGE_SIZE];
+				_next = advance(_next + 1);
+				return terminal;
+			}
+		};
+	}
+
+	/**
+	 * Split the terminals in the order of their keys.
+	 */
+	@Override
+	public Spliterator<Terminal> spliterator() {
+		if (_sorted == null) {
+			Terminal[] sorted = new Terminal[_size];
+			int i = 0;
+			for (Terminal terminal : this) {
+				sorted[i++] = terminal;
+			}
+			_sorted = sorted;
+		}
+		return Arrays.spliterator(_sorted);
+	}
+
+	/**
+	 * @return the first index, from the given one, with a terminal, or
+	 *         CAPACITY if there is none
+	 */
+	private int advance(int index) {
+		while (index < CAPACITY) {
+			Terminal[] page = _pages[index / PAGE_SIZE];
+			if (page == null) {
+				index = (index / PAGE_SIZE + 1) * PAGE_SIZE;
+			} else if (page[index % PAGE_SIZE] == null) {
+				index++;
+			} else {
+				return index;
+			}
+		}
+		return CAPACITY;
+	}
+}
@@ -1,25 +1,27 @@
 package prr.clients;
 
-import java.io.Serializable;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 
 import prr.communications.InteractiveCommunication;
 import prr.communications.TextCommunication;
 import prr.terminals.Terminal;
 
-public class Client implements Serializable {
+public class Client {
     private String _key;
     private String _name;
     private int _taxId;
-    private ClientType _type = new NormalType(this);
+    private ClientType _type = ClientType.NORMAL;
+    private int _textCommunicationStreak = 0;
+    private int _videoCommunicationStreak = 0;
     private boolean _receiveNotifications = true;
     private Map<String, Terminal> _terminals = new HashMap<String, Terminal>();
-    private double _payments = 0;
-    private double _debts = 0;
+    private long _payments = 0;
+    private long _debts = 0;
     private List<Notification> _notifications = new LinkedList<Notification>();
     private NotificationDeliveryMethod deliveryMethod = new DefaultDeliveryMethod();
 
@@ -39,14 +41,49 @@ public class Client implements Serializable {
         return _key;
     }
 
+    public String getName() {
+        return _name;
+    }
+
+    public int getTaxId() {
+        return _taxId;
+    }
+
+    public ClientType getType() {
+        return _type;
+    }
+
+    /**
+     * Changes the type of this client, which starts new streaks.
+     */
     public void setType(ClientType type) {
         _type = type;
+        _textCommunicationStreak = 0;
+        _videoCommunicationStreak = 0;
+    }
+
+    public int getTextCommStreak() {
+        return _textCommunicationStreak;
+    }
+
+    public int getVideoCommStreak() {
+        return _videoCommunicationStreak;
+    }
+
+    public void restoreStreaks(int textCommunicationStreak,
+                               int videoCommunicationStreak) {
+        _textCommunicationStreak = textCommunicationStreak;
+        _videoCommunicationStreak = videoCommunicationStreak;
     }
 
     public void addTerminal(Terminal terminal) {
         _terminals.put(terminal.getKey(), terminal);
     }
 
+    public List<Notification> getNotifications() {
+        return Collections.unmodifiableList(_notifications);
+    }
+
     public List<Notification> clearNotifications() {
         List<Notification> notifications = _notifications;
         _notifications = new LinkedList<Notification>();
@@ -61,15 +98,15 @@ public class Client implements Serializable {
         _receiveNotifications = receiveNotifications;
     }
 
-    public double getPayments() {
+    public long getPayments() {
         return _payments;
     }
 
-    public double getBalance() {
+    public long getBalance() {
         return _payments - _debts;
     }
 
-    public double getDebts() {
+    public long getDebts() {
         return _debts;
     }
 
@@ -81,30 +118,65 @@ public class Client implements Serializable {
         return _terminals.values();
     }
 
-    public void performPayment(double payment) {
+    public void restoreBalance(long payments, long debts) {
+        _payments = payments;
+        _debts = debts;
+    }
+
+    public void performPayment(long payment) {
         _payments += payment;
         _debts -= payment;
-        _type.checkTransitionAfterPayment();
+        _type.checkTransitionAfterPayment(this);
+    }
+
+    /**
+     * Charges (or credits, if negative) an amount which changes the cost of
+     * a communication already charged.
+     */
+    public void addDebts(long amount) {
+        _debts += amount;
+    }
+
+    public long calculateTextCommCost(TextCommunication comm) {
+        return chargeTextComm(
+                _type.getTariffPlan().calculateTextCommCost(comm));
+    }
+
+    public long calculateVoiceCommCost(InteractiveCommunication comm) {
+        return chargeVoiceComm(
+                _type.getTariffPlan().calculateVoiceCommCost(comm));
+    }
+
+    public long calculateVideoCommCost(InteractiveCommunication comm) {
+        return chargeVideoComm(
+                _type.getTariffPlan().calculateVideoCommCost(comm));
     }
 
-    public double calculateTextCommCost(TextCommunication comm) {
-        double cost = _type.calculateTextCommCost(comm);
+    /**
+     * Charges a text communication whose cost is already known (when it
+     * is replayed from a journal, for instance), as if it had been rated.
+     */
+    public long chargeTextComm(long cost) {
+        _textCommunicationStreak++;
+        _videoCommunicationStreak = 0;
         _debts += cost;
-        _type.checkTransitionAfterComm();
+        _type.checkTransitionAfterComm(this);
         return cost;
     }
 
-    public double calculateVoiceCommCost(InteractiveCommunication comm) {
-        double cost = _type.calculateVoiceCommCost(comm);
+    public long chargeVoiceComm(long cost) {
+        _textCommunicationStreak = 0;
+        _videoCommunicationStreak = 0;
         _debts += cost;
-        _type.checkTransitionAfterComm();
+        _type.checkTransitionAfterComm(this);
         return cost;
     }
 
-    public double calculateVideoCommCost(InteractiveCommunication comm) {
-        double cost = _type.calculateVideoCommCost(comm);
+    public long chargeVideoComm(long cost) {
+        _textCommunicationStreak = 0;
+        _videoCommunicationStreak++;
         _debts += cost;
-        _type.checkTransitionAfterComm();
+        _type.checkTransitionAfterComm(this);
         return cost;
     }
 
@@ -117,8 +189,8 @@ public class Client implements Serializable {
         return String.format("CLIENT|%s|%s|%d|%s|%s|%d|%d|%d",
                              _key, _name, _taxId, _type.toString(),
                              _receiveNotifications ? "YES" : "NO",
-                             _terminals.size(), Math.round(_payments),
-                             Math.round(_debts));
+                             _terminals.size(), Money.round(_payments),
+                             Money.round(_debts));
     }
 
 }
\ No newline at end of file
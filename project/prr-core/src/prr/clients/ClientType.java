@@ -1,54 +1,53 @@
 package prr.clients;
 
-import java.io.Serializable;
-
-import prr.communications.InteractiveCommunication;
-import prr.communications.TextCommunication;
-
-public abstract class ClientType implements Serializable {
-    private Client _client;
-    private TariffPlan _tariffPlan;
-    private int _textCommunicationStreak = 0;
-    private int _videoCommunicationStreak = 0;
-
-    public ClientType(Client client, TariffPlan tariffPlan) {
-        _client = client;
-        _tariffPlan = tariffPlan;
-    }
-
-    public Client getClient() {
-        return _client;
-    }
-
-    public int getTextCommStreak() {
-        return _textCommunicationStreak;
-    }
-
-    public int getVideoCommStreak() {
-        return _videoCommunicationStreak;
+/**
+ * Types of clients. Types are shared by every client, which is given to
+ * the methods that need it; the streaks of communications of a client are
+ * kept by the client.
+ */
+public enum ClientType {
+    NORMAL {
+        @Override
+        public void checkTransitionAfterPayment(Client client) {
+            if (client.getBalance() > Tariffs.current().getGoldBalance()) {
+                client.setType(GOLD);
+            }
+        }
+    },
+
+    GOLD {
+        @Override
+        public void checkTransitionAfterComm(Client client) {
+            if (client.getBalance() < 0) {
+                client.setType(NORMAL);
+            } else if (client.getVideoCommStreak()
+                       == Tariffs.current().getPlatinumVideoStreak()) {
+                client.setType(PLATINUM);
+            }
+        }
+    },
+
+    PLATINUM {
+        @Override
+        public void checkTransitionAfterComm(Client client) {
+            if (client.getBalance() < 0) {
+                client.setType(NORMAL);
+            } else if (client.getTextCommStreak()
+                       == Tariffs.current().getGoldTextStreak()) {
+                client.setType(GOLD);
+            }
+        }
+    };
+
+    public TariffPlan getTariffPlan() {
+        return Tariffs.current().getPlan(this);
     }
 
-    public double calculateTextCommCost(TextCommunication comm) {
-        _textCommunicationStreak++;
-        _videoCommunicationStreak = 0;
-        return _tariffPlan.calculateTextCommCost(comm);
+    public void checkTransitionAfterPayment(Client client) {
+        // EMPTY
     }
 
-    public double calculateVoiceCommCost(InteractiveCommunication comm) {
-        _textCommunicationStreak = 0;
-        _videoCommunicationStreak = 0;
-        return _tariffPlan.calculateVoiceCommCost(comm);
+    public void checkTransitionAfterComm(Client client) {
+        // EMPTY
     }
-
-    public double calculateVideoCommCost(InteractiveCommunication comm) {
-        _textCommunicationStreak = 0;
-        _videoCommunicationStreak++;
-        return _tariffPlan.calculateVideoCommCost(comm);
-    }
-
-    public abstract void transitToNormal();
-    public abstract void transitToGold();
-    public abstract void transitToPlatinum();
-    public abstract void checkTransitionAfterPayment();
-    public abstract void checkTransitionAfterComm();
 }
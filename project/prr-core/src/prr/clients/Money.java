@@ -0,0 +1,61 @@
+package prr.clients;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts of money in fixed point: an amount is a long with the number
+ * of hundredths of a unit, so costs, payments and debts are added up
+ * exactly. Amounts are shown rounded to units, half up.
+ */
+public final class Money {
+    /** Number of hundredths in a unit. */
+    public static final long SCALE = 100;
+
+    private Money() {
+        // static methods only
+    }
+
+    /**
+     * @return the amount of a number of units
+     */
+    public static long of(long units) {
+        return Math.multiplyExact(units, SCALE);
+    }
+
+    /**
+     * @param text an amount in units, with at most two decimals
+     * @return the amount, exactly
+     * @throws NumberFormatException if the text is not an amount, has
+     *                               more decimals or is out of range
+     */
+    public static long parse(String text) {
+        try {
+            // SCALE is 10^2
+            return new BigDecimal(text).movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("not an exact amount: " + text);
+        }
+    }
+
+    /**
+     * @return the amount nearest to a value in units, used to convert
+     *         the amounts saved as doubles
+     */
+    public static long fromDouble(double value) {
+        return Math.round(value * SCALE);
+    }
+
+    /**
+     * @return a percentage of an amount, rounded half up
+     */
+    public static long percent(long amount, int percent) {
+        return Math.floorDiv(Math.multiplyExact(amount, percent) + 50, 100);
+    }
+
+    /**
+     * @return the amount rounded to units, half up (as Math.round)
+     */
+    public static long round(long amount) {
+        return Math.floorDiv(amount + SCALE / 2, SCALE);
+    }
+}
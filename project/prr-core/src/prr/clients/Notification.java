@@ -1,8 +1,6 @@
 package prr.clients;
 
-import java.io.Serializable;
-
-public class Notification implements Serializable {
+public class Notification {
     String _terminalKey;
 
     public Notification(String terminalKey) {
@@ -1,7 +1,5 @@
 package prr.clients;
 
-import java.io.Serializable;
-
-public interface NotificationDeliveryMethod extends Serializable {
+public interface NotificationDeliveryMethod {
     public void deliver(Notification notification);
 }
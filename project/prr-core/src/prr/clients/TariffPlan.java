@@ -1,12 +1,10 @@
 package prr.clients;
 
-import java.io.Serializable;
-
 import prr.communications.InteractiveCommunication;
 import prr.communications.TextCommunication;
 
-public interface TariffPlan extends Serializable {
-    public double calculateTextCommCost(TextCommunication comm);
-    public double calculateVoiceCommCost(InteractiveCommunication comm);
-    public double calculateVideoCommCost(InteractiveCommunication comm);
+public interface TariffPlan {
+    public long calculateTextCommCost(TextCommunication comm);
+    public long calculateVoiceCommCost(InteractiveCommunication comm);
+    public long calculateVideoCommCost(InteractiveCommunication comm);
 }
@@ -0,0 +1,81 @@
+package prr.clients;
+
+import prr.communications.InteractiveCommunication;
+import prr.communications.TextCommunication;
+
+/**
+ * Tariff plan compiled from a table (see Tariffs).
+ *
+ * Texts are priced by tiers of their length: the tier of a text is the
+ * first bound its length is below, or the last tier, and it costs a fixed
+ * amount plus an amount per character. The cost of every length below the
+ * last bound is calculated in advance, so rating a text is a lookup.
+ * Voice and video cost a rate per unit of duration, with a percentage of
+ * it when the destination is a friend (or was, when the communication
+ * was charged).
+ */
+public class TariffTable implements BaseTariffPlan {
+    private final long[] _textCosts;
+    private final long _longTextFixed;
+    private final long _longTextPerCharacter;
+    private final long _voiceRate;
+    private final long _videoRate;
+    /** Percentage charged to strangers, and to friends. */
+    private final int[] _percents;
+
+    /**
+     * @param bounds       increasing lengths which separate the tiers
+     * @param fixed        the fixed cost of each tier, in Money
+     * @param perCharacter the cost per character of each tier, in Money
+     */
+    public TariffTable(int[] bounds, long[] fixed, long[] perCharacter,
+                       long voiceRate, long videoRate, int friendPercent) {
+        if (fixed.length != bounds.length + 1
+                || perCharacter.length != bounds.length + 1) {
+            throw new IllegalArgumentException(
+                    "a text tier needs a cost between each bound");
+        }
+        for (int i = 0; i < bounds.length; i++) {
+            if (bounds[i] <= (i == 0 ? 0 : bounds[i - 1])) {
+                throw new IllegalArgumentException(
+                        "text bounds must be positive and increasing");
+            }
+        }
+        if (friendPercent < 0) {
+            throw new IllegalArgumentException("negative friend percentage");
+        }
+
+        int last = bounds.length;
+        _textCosts = new long[last == 0 ? 0 : bounds[last - 1]];
+        for (int length = 0, tier = 0; length < _textCosts.length; length++) {
+            if (length >= bounds[tier]) {
+                tier++;
+            }
+            _textCosts[length] = fixed[tier] + perCharacter[tier] * length;
+        }
+        _longTextFixed = fixed[last];
+        _longTextPerCharacter = perCharacter[last];
+        _voiceRate = voiceRate;
+        _videoRate = videoRate;
+        _percents = new int[] { 100, friendPercent };
+    }
+
+    @Override
+    public long calculateTextCommCost(TextCommunication comm) {
+        int characters = comm.getMessage().length();
+        return characters < _textCosts.length ? _textCosts[characters]
+               : _longTextFixed + _longTextPerCharacter * characters;
+    }
+
+    @Override
+    public long calculateVoiceCommCost(InteractiveCommunication comm) {
+        return Money.percent(_voiceRate * comm.getDuration(),
+                             _percents[comm.isRatedAsFriend() ? 1 : 0]);
+    }
+
+    @Override
+    public long calculateVideoCommCost(InteractiveCommunication comm) {
+        return Money.percent(_videoRate * comm.getDuration(),
+                             _percents[comm.isRatedAsFriend() ? 1 : 0]);
+    }
+}
@@ -0,0 +1,232 @@
+package prr.clients;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Tariffs of the types of clients, defined by a table of properties and
+ * compiled into TariffTables. The tariffs in use are the defaults below,
+ * changed by the properties in the file given with -Dtariffs, which the
+ * application loads when it starts, so a missing or invalid file is
+ * reported then (they are loaded when they are first needed otherwise).
+ *
+ * Amounts are in units of Money and may have up to two decimals, which
+ * are read exactly. The text bounds of a type separate its tiers, so
+ * there is one more fixed and per character cost than bounds. The rules
+ * which change the type of a client are the balance over which a NORMAL
+ * client becomes GOLD after paying, and the number of consecutive video
+ * communications after which a GOLD client becomes PLATINUM, or text
+ * communications after which a PLATINUM client becomes GOLD.
+ */
+public final class Tariffs {
+    private static final String DEFAULTS = """
+            NORMAL.text.bounds = 50, 100
+            NORMAL.text.fixed = 10, 16, 0
+            NORMAL.text.perCharacter = 0, 0, 2
+            NORMAL.voice = 20
+            NORMAL.video = 30
+            NORMAL.friendPercent = 50
+            NORMAL.toGold.balance = 500
+
+            GOLD.text.bounds = 100
+            GOLD.text.fixed = 10, 0
+            GOLD.text.perCharacter = 0, 2
+            GOLD.voice = 10
+            GOLD.video = 20
+            GOLD.friendPercent = 50
+            GOLD.toPlatinum.videoStreak = 5
+
+            PLATINUM.text.bounds = 50
+            PLATINUM.text.fixed = 0, 4
+            PLATINUM.text.perCharacter = 0, 0
+            PLATINUM.voice = 10
+            PLATINUM.video = 10
+            PLATINUM.friendPercent = 50
+            PLATINUM.toGold.textStreak = 2
+            """;
+
+    private static volatile Tariffs _current;
+
+    private final Map<String, TariffTable> _plans =
+            new LinkedHashMap<String, TariffTable>();
+    /** The plans, by ordinal of their type. */
+    private final TariffTable[] _typePlans =
+            new TariffTable[ClientType.values().length];
+    private final long _goldBalance;
+    private final int _platinumVideoStreak;
+    private final int _goldTextStreak;
+
+    private Tariffs(Properties definitions) {
+        for (ClientType type : ClientType.values()) {
+            TariffTable plan = new TariffTable(
+                    integers(definitions, type + ".text.bounds"),
+                    amounts(definitions, type + ".text.fixed"),
+                    amounts(definitions, type + ".text.perCharacter"),
+                    amount(definitions, type + ".voice"),
+                    amount(definitions, type + ".video"),
+                    integer(definitions, type + ".friendPercent"));
+            _plans.put(type.name(), plan);
+            _typePlans[type.ordinal()] = plan;
+        }
+        _goldBalance = amount(definitions, "NORMAL.toGold.balance");
+        _platinumVideoStreak =
+                integer(definitions, "GOLD.toPlatinum.videoStreak");
+        _goldTextStreak = integer(definitions, "PLATINUM.toGold.textStreak");
+    }
+
+    /**
+     * @return the tariffs in use, which are loaded if they have not been
+     * @throws UncheckedIOException if the tariffs cannot be read
+     */
+    public static Tariffs current() {
+        Tariffs tariffs = _current;
+        if (tariffs == null) {
+            synchronized (Tariffs.class) {
+                if (_current == null) {
+                    try {
+                        load();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                tariffs = _current;
+            }
+        }
+        return tariffs;
+    }
+
+    /**
+     * Load the tariffs in use: the defaults, changed by the file given
+     * with -Dtariffs, if any.
+     *
+     * @return the tariffs loaded
+     * @throws IOException              if the file cannot be read
+     * @throws IllegalArgumentException if a tariff is not valid
+     */
+    public static synchronized Tariffs load() throws IOException {
+        String file = System.getProperty("tariffs");
+        Tariffs tariffs = file == null ? read(new StringReader(""))
+                                       : read(Path.of(file));
+        _current = tariffs;
+        return tariffs;
+    }
+
+    /**
+     * Use other tariffs from now on.
+     */
+    public static void use(Tariffs tariffs) {
+        _current = Objects.requireNonNull(tariffs);
+    }
+
+    /**
+     * Read tariffs from a file, which changes the defaults.
+     *
+     * @throws IllegalArgumentException if a tariff is not valid
+     */
+    public static Tariffs read(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+
+    public static Tariffs read(Reader reader) throws IOException {
+        Properties defaults = new Properties();
+        defaults.load(new StringReader(DEFAULTS));
+        Properties definitions = new Properties(defaults);
+        definitions.load(reader);
+        return new Tariffs(definitions);
+    }
+
+    /**
+     * @param type NORMAL, GOLD or PLATINUM
+     */
+    public TariffTable getPlan(String type) {
+        TariffTable plan = _plans.get(type);
+        if (plan == null) {
+            throw new IllegalArgumentException(type);
+        }
+        return plan;
+    }
+
+    public TariffTable getPlan(ClientType type) {
+        return _typePlans[type.ordinal()];
+    }
+
+    /**
+     * @return the plan of each type of client
+     */
+    public Map<String, TariffTable> getPlans() {
+        return Collections.unmodifiableMap(_plans);
+    }
+
+    public long getGoldBalance() {
+        return _goldBalance;
+    }
+
+    public int getPlatinumVideoStreak() {
+        return _platinumVideoStreak;
+    }
+
+    public int getGoldTextStreak() {
+        return _goldTextStreak;
+    }
+
+    private static String value(Properties definitions, String key) {
+        String value = definitions.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("missing tariff " + key);
+        }
+        return value.trim();
+    }
+
+    private static String[] values(Properties definitions, String key) {
+        String value = value(definitions, key);
+        return value.isEmpty() ? new String[0] : value.split("\\s*,\\s*");
+    }
+
+    private static int integer(Properties definitions, String key) {
+        try {
+            return Integer.parseInt(value(definitions, key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid tariff " + key, e);
+        }
+    }
+
+    private static int[] integers(Properties definitions, String key) {
+        try {
+            return Arrays.stream(values(definitions, key))
+                         .mapToInt(Integer::parseInt).toArray();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid tariff " + key, e);
+        }
+    }
+
+    private static long amount(Properties definitions, String key) {
+        try {
+            return Money.parse(value(definitions, key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid tariff " + key, e);
+        }
+    }
+
+    private static long[] amounts(Properties definitions, String key) {
+        try {
+            return Arrays.stream(values(definitions, key))
+                         .mapToLong(Money::parse).toArray();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid tariff " + key, e);
+        }
+    }
+}
@@ -1,76 +1,116 @@
 package prr.communications;
 
-import java.io.Serializable;
+import prr.clients.ClientType;
+import prr.clients.TariffPlan;
 import prr.terminals.Terminal;
 
-public abstract class Communication implements Serializable {
-    private int _key;
-    private boolean _inProgress;
-    private double _cost = 0;
-    private boolean _paid = false;
-    private Terminal _sourceTerminal;
-    private Terminal _destinationTerminal;
+public abstract class Communication {
+    private final CommunicationColumns _columns;
+    private final int _row;
 
-    public Communication(int key, boolean inProgress, Terminal sourceTerminal,
-                         Terminal destinationTerminal) {
+    Communication(CommunicationColumns columns, int row) {
+        _columns = columns;
+        _row = row;
+    }
+
+    /**
+     * @return the table with the row of this communication
+     */
+    public CommunicationColumns getColumns() {
+        return _columns;
+    }
 
-        _key = key;
-        _inProgress = inProgress;
-        _sourceTerminal = sourceTerminal; 
-        _destinationTerminal = destinationTerminal;
+    int getRow() {
+        return _row;
     }
 
     public int getKey() {
-        return _key;
+        return _columns.getKey(_row);
     }
 
-    public double getCost() {
-        return _cost;
+    public long getCost() {
+        return _columns.getCost(_row);
     }
 
     public boolean getInProgress() {
-        return _inProgress;
+        return _columns.getInProgress(_row);
     }
 
     public void setInProgress(boolean inProgress) {
-        _inProgress = inProgress;
+        _columns.setInProgress(_row, inProgress);
     }
 
-    public void setCost(double cost) {
-        _cost = cost;
+    public void setCost(long cost) {
+        _columns.setCost(_row, cost);
     }
 
     public boolean getPaid() {
-        return _paid;
+        return _columns.getPaid(_row);
+    }
+
+    public void setPaid(boolean paid) {
+        _columns.setPaid(_row, paid);
     }
 
     public Terminal getSourceTerminal() {
-        return _sourceTerminal;
+        return _columns.getSourceTerminal(_row);
     }
 
     public Terminal getDestinationTerminal() {
-        return _destinationTerminal;
+        return _columns.getDestinationTerminal(_row);
     }
 
     public boolean isFriend() {
-        return _sourceTerminal.isFriend(_destinationTerminal);
+        return getSourceTerminal().isFriend(getDestinationTerminal());
+    }
+
+    /**
+     * Records how the communication is charged: the type of the client of
+     * its source terminal, and if its destination is a friend, so it can
+     * be rated again as it was charged.
+     */
+    public void setRating(ClientType type, boolean friend) {
+        _columns.setRating(_row, type, friend);
+    }
+
+    /**
+     * @return the type of the client when the communication was charged,
+     *         or null if it is not known (it was saved by an older version)
+     */
+    public ClientType getRatedType() {
+        return _columns.getRatedType(_row);
     }
 
-    public double pay() {
-        _paid = true;
-        return _cost;
+    /**
+     * @return if the communication is rated as one to a friend: as it was
+     *         charged, once it has been (and it is known), or as it is now
+     */
+    public boolean isRatedAsFriend() {
+        return getRatedType() != null ? _columns.getRatedAsFriend(_row)
+                                      : isFriend();
+    }
+
+    /**
+     * Calculates the cost of this communication with a tariff plan, without
+     * charging it.
+     */
+    public abstract long rate(TariffPlan plan);
+
+    public long pay() {
+        setPaid(true);
+        return getCost();
     }
 
-    public void endCommunication(double cost) {
-        _cost = cost;
-        _inProgress = false;
-        _sourceTerminal.endOnGoingCommunication();
-        _destinationTerminal.endOnGoingCommunication();
+    public void endCommunication(long cost) {
+        setCost(cost);
+        setInProgress(false);
+        getSourceTerminal().endOnGoingCommunication();
+        getDestinationTerminal().endOnGoingCommunication();
     }
 
     @Override
     public String toString() {
-        return String.format("%d|%s|%s|", _key, _sourceTerminal.getKey(),
-                                          _destinationTerminal.getKey());
+        return String.format("%d|%s|%s|", getKey(), getSourceTerminal().getKey(),
+                                          getDestinationTerminal().getKey());
     }
 }
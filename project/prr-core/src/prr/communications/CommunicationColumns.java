@@ -0,0 +1,325 @@
+package prr.communications;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import prr.clients.ClientType;
+import prr.terminals.Terminal;
+
+/**
+ * Table of communications stored by columns: each attribute is kept in
+ * an array of primitives, indexed by the row of the communication, and
+ * the messages of the text communications are kept one after the other
+ * in chunks of about CHUNK_SIZE characters (a message is never split),
+ * so the messages of a table are not limited by the size of a single
+ * buffer. Rows are sorted by key.
+ *
+ * Communication objects are only views of a row, created when they are
+ * needed, and changing them changes the table.
+ */
+public class CommunicationColumns {
+    public static final byte TEXT = 0;
+    public static final byte VOICE = 1;
+    public static final byte VIDEO = 2;
+
+    private static final byte IN_PROGRESS = 1;
+    private static final byte PAID = 2;
+
+    /** Flag of the ratings of communications to friends. */
+    private static final byte FRIEND_RATING = 0x10;
+
+    /** Number of characters after which a chunk of messages is full. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Ids of the terminals referred to by tables of communications,
+     * which can be shared by several tables.
+     */
+    public static class Terminals {
+        private final List<Terminal> _terminals = new ArrayList<Terminal>();
+        private final Map<Terminal, Integer> _ids =
+                new IdentityHashMap<Terminal, Integer>();
+
+        public Terminals() {
+            // EMPTY
+        }
+
+        /**
+         * Copy the ids of other terminals.
+         */
+        public Terminals(Terminals terminals) {
+            _terminals.addAll(terminals._terminals);
+            _ids.putAll(terminals._ids);
+        }
+
+        public Terminal get(int id) {
+            return _terminals.get(id);
+        }
+
+        public int idOf(Terminal terminal) {
+            Integer id = _ids.get(terminal);
+            if (id == null) {
+                id = _terminals.size();
+                _terminals.add(terminal);
+                _ids.put(terminal, id);
+            }
+            return id;
+        }
+    }
+
+    private final Terminals _terminals;
+    private int _size = 0;
+    private int[] _keys;
+    private byte[] _types;
+    private int[] _sources;
+    private int[] _destinations;
+    private long[] _durations;
+    private long[] _costs;
+    private byte[] _flags;
+    /**
+     * How each communication was charged: the ordinal of the type of its
+     * client plus one (or 0, if it is not known), and FRIEND_RATING if
+     * its destination was a friend.
+     */
+    private byte[] _ratings;
+
+    /** End of the message of each row, counted over all the chunks. */
+    private long[] _messageEnds;
+    /** The full chunks of messages, which are not changed any more. */
+    private final List<String> _chunks = new ArrayList<String>();
+    /** Offset of the first character of each chunk, and of _messages. */
+    private long[] _chunkStarts = new long[1];
+    /** The chunk where messages are added. */
+    private final StringBuilder _messages = new StringBuilder();
+
+    public CommunicationColumns(Terminals terminals, int capacity) {
+        _terminals = terminals;
+        capacity = Math.max(capacity, 1);
+        _keys = new int[capacity];
+        _types = new byte[capacity];
+        _sources = new int[capacity];
+        _destinations = new int[capacity];
+        _durations = new long[capacity];
+        _costs = new long[capacity];
+        _flags = new byte[capacity];
+        _ratings = new byte[capacity];
+        _messageEnds = new long[capacity];
+    }
+
+    /**
+     * Copy a table, which is then changed apart from it. Only the columns
+     * are copied: the full chunks of messages are shared.
+     *
+     * @param terminals the ids of the terminals of the copy, which must
+     *                  have the same ids as the ones of this table
+     */
+    public CommunicationColumns copy(Terminals terminals) {
+        CommunicationColumns copy = new CommunicationColumns(terminals, 0);
+        copy._size = _size;
+        int capacity = Math.max(_size, 1);
+        copy._keys = Arrays.copyOf(_keys, capacity);
+        copy._types = Arrays.copyOf(_types, capacity);
+        copy._sources = Arrays.copyOf(_sources, capacity);
+        copy._destinations = Arrays.copyOf(_destinations, capacity);
+        copy._durations = Arrays.copyOf(_durations, capacity);
+        copy._costs = Arrays.copyOf(_costs, capacity);
+        copy._flags = Arrays.copyOf(_flags, capacity);
+        copy._ratings = Arrays.copyOf(_ratings, capacity);
+        copy._messageEnds = Arrays.copyOf(_messageEnds, capacity);
+        copy._chunks.addAll(_chunks);
+        copy._chunkStarts = _chunkStarts.clone();
+        copy._messages.append(_messages);
+        return copy;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    /**
+     * Add a communication, whose key must be greater than the keys of
+     * the communications already in the table.
+     *
+     * @return the view of the communication
+     */
+    public Communication add(byte type, int key, Terminal source,
+                             Terminal destination, boolean inProgress,
+                             boolean paid, long cost, long duration,
+                             String message) {
+
+        if (type < TEXT || type > VIDEO) {
+            throw new IllegalArgumentException("communication type " + type);
+        }
+        if (_size > 0 && key <= _keys[_size - 1]) {
+            throw new IllegalArgumentException("communication key " + key);
+        }
+        if (_size == _keys.length) {
+            grow();
+        }
+
+        int row = _size++;
+        _keys[row] = key;
+        _types[row] = type;
+        _sources[row] = _terminals.idOf(source);
+        _destinations[row] = _terminals.idOf(destination);
+        _durations[row] = duration;
+        _costs[row] = cost;
+        _flags[row] = (byte) ((inProgress ? IN_PROGRESS : 0) |
+                              (paid ? PAID : 0));
+        if (type == TEXT) {
+            if (_messages.length() > 0
+                    && _messages.length() + message.length() > CHUNK_SIZE) {
+                sealChunk();
+            }
+            _messages.append(message);
+        }
+        _messageEnds[row] = _chunkStarts[_chunks.size()] + _messages.length();
+        return get(row);
+    }
+
+    /**
+     * Close the chunk where messages are added and start a new one.
+     */
+    private void sealChunk() {
+        String chunk = _messages.toString();
+        _chunks.add(chunk);
+        int last = _chunks.size();
+        if (last == _chunkStarts.length) {
+            _chunkStarts = Arrays.copyOf(_chunkStarts, 2 * last);
+        }
+        _chunkStarts[last] = _chunkStarts[last - 1] + chunk.length();
+        _messages.setLength(0);
+    }
+
+    /**
+     * @return the row of the communication with the given key, or -1
+     */
+    public int rowOf(int key) {
+        if (_size == 0) {
+            return -1;
+        }
+        // keys are usually consecutive
+        long row = (long) key - _keys[0];
+        if (row >= 0 && row < _size && _keys[(int) row] == key) {
+            return (int) row;
+        }
+        int found = Arrays.binarySearch(_keys, 0, _size, key);
+        return found < 0 ? -1 : found;
+    }
+
+    /**
+     * @return the first row whose key is not smaller than the given key,
+     *         or size() if there is none
+     */
+    public int ceilingRow(int key) {
+        int found = Arrays.binarySearch(_keys, 0, _size, key);
+        return found < 0 ? -found - 1 : found;
+    }
+
+    /**
+     * @return a view of the communication of a row
+     */
+    public Communication get(int row) {
+        return switch (_types[row]) {
+            case TEXT -> new TextCommunication(this, row);
+            case VOICE -> new VoiceCommunication(this, row);
+            default -> new VideoCommunication(this, row);
+        };
+    }
+
+    public int getKey(int row) {
+        return _keys[row];
+    }
+
+    public boolean getInProgress(int row) {
+        return (_flags[row] & IN_PROGRESS) != 0;
+    }
+
+    void setInProgress(int row, boolean inProgress) {
+        setFlag(row, IN_PROGRESS, inProgress);
+    }
+
+    boolean getPaid(int row) {
+        return (_flags[row] & PAID) != 0;
+    }
+
+    void setPaid(int row, boolean paid) {
+        setFlag(row, PAID, paid);
+    }
+
+    Terminal getSourceTerminal(int row) {
+        return _terminals.get(_sources[row]);
+    }
+
+    Terminal getDestinationTerminal(int row) {
+        return _terminals.get(_destinations[row]);
+    }
+
+    long getCost(int row) {
+        return _costs[row];
+    }
+
+    void setCost(int row, long cost) {
+        _costs[row] = cost;
+    }
+
+    ClientType getRatedType(int row) {
+        int type = (_ratings[row] & ~FRIEND_RATING) - 1;
+        return type < 0 ? null : ClientType.values()[type];
+    }
+
+    boolean getRatedAsFriend(int row) {
+        return (_ratings[row] & FRIEND_RATING) != 0;
+    }
+
+    void setRating(int row, ClientType type, boolean friend) {
+        _ratings[row] = (byte) ((type.ordinal() + 1)
+                                | (friend ? FRIEND_RATING : 0));
+    }
+
+    long getDuration(int row) {
+        return _durations[row];
+    }
+
+    void setDuration(int row, long duration) {
+        _durations[row] = duration;
+    }
+
+    String getMessage(int row) {
+        long start = row == 0 ? 0 : _messageEnds[row - 1];
+        int length = (int) (_messageEnds[row] - start);
+        if (length == 0) {
+            return "";
+        }
+        // chunks are never empty, so their starts are increasing
+        int chunk = Arrays.binarySearch(_chunkStarts, 0, _chunks.size() + 1,
+                                        start);
+        if (chunk < 0) {
+            chunk = -chunk - 2;
+        }
+        CharSequence text = chunk == _chunks.size() ? _messages
+                                                     : _chunks.get(chunk);
+        int offset = (int) (start - _chunkStarts[chunk]);
+        return text.subSequence(offset, offset + length).toString();
+    }
+
+    private void setFlag(int row, byte flag, boolean value) {
+        _flags[row] = (byte) (value ? _flags[row] | flag : _flags[row] & ~flag);
+    }
+
+    private void grow() {
+        int capacity = 2 * _keys.length;
+        _keys = Arrays.copyOf(_keys, capacity);
+        _types = Arrays.copyOf(_types, capacity);
+        _sources = Arrays.copyOf(_sources, capacity);
+        _destinations = Arrays.copyOf(_destinations, capacity);
+        _durations = Arrays.copyOf(_durations, capacity);
+        _costs = Arrays.copyOf(_costs, capacity);
+        _flags = Arrays.copyOf(_flags, capacity);
+        _ratings = Arrays.copyOf(_ratings, capacity);
+        _messageEnds = Arrays.copyOf(_messageEnds, capacity);
+    }
+}
@@ -3,25 +3,27 @@ package prr.communications;
 import prr.terminals.Terminal;
 
 public abstract class InteractiveCommunication extends Communication {
-    private long _duration = 0;
-
-    public InteractiveCommunication(int key, Terminal sourceTerminal,
-                                    Terminal destinationTerminal) {
-                                        
-        super(key, true, sourceTerminal, destinationTerminal);
+    InteractiveCommunication(CommunicationColumns columns, int row) {
+        super(columns, row);
     }
 
     public long getDuration() {
-        return _duration;
+        return getColumns().getDuration(getRow());
     }
 
     public void setDuration(long duration) {
-        _duration = duration;
+        getColumns().setDuration(getRow(), duration);
     }
 
     public Terminal getSourceTerminal() {
         return super.getSourceTerminal();
     }
 
-    public abstract double endInteractiveComm(long duration);
+    public abstract long endInteractiveComm(long duration);
+
+    /**
+     * Ends the communication, charging a cost already known instead of
+     * rating it.
+     */
+    public abstract long endInteractiveComm(long duration, long cost);
 }
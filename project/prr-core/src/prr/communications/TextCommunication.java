@@ -1,26 +1,27 @@
 package prr.communications;
 
-import prr.terminals.Terminal;
+import prr.clients.Money;
+import prr.clients.TariffPlan;
 
 public class TextCommunication extends Communication {
-    private String _message = "";
-
-    public TextCommunication(int key, Terminal sourceTerminal,
-                            Terminal destinationTerminal, String message) {
-                                
-        super(key, false, sourceTerminal, destinationTerminal);
-        _message = message;
+    TextCommunication(CommunicationColumns columns, int row) {
+        super(columns, row);
     }
 
     public String getMessage() {
-        return _message;
+        return getColumns().getMessage(getRow());
+    }
+
+    @Override
+    public long rate(TariffPlan plan) {
+        return plan.calculateTextCommCost(this);
     }
 
     @Override
     public String toString() {
         return "TEXT|" + super.toString() + String.format("%d|%d|%s",
-                        _message.length(),
-                        Math.round(super.getCost()),
+                        getMessage().length(),
+                        Money.round(super.getCost()),
                         super.getInProgress() ? "ONGOING" : "FINISHED");
     }
 }
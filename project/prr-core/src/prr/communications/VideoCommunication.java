@@ -1,27 +1,38 @@
 package prr.communications;
 
-import prr.terminals.Terminal;
+import prr.clients.Money;
+import prr.clients.TariffPlan;
 
 public class VideoCommunication extends InteractiveCommunication {
 
-    public VideoCommunication(int key, Terminal sourceTerminal, 
-                              Terminal destinationTerminal) {
-                                
-        super(key, sourceTerminal, destinationTerminal);
+    VideoCommunication(CommunicationColumns columns, int row) {
+        super(columns, row);
     }
 
-    public double endInteractiveComm(long duration) {
+    public long endInteractiveComm(long duration) {
         super.setDuration(duration);
-        double cost = super.getSourceTerminal().calculateVideoCommCost(this);
+        long cost = super.getSourceTerminal().calculateVideoCommCost(this);
         super.endCommunication(cost);
         return cost;
     }
 
+    public long endInteractiveComm(long duration, long cost) {
+        super.setDuration(duration);
+        super.getSourceTerminal().getClient().chargeVideoComm(cost);
+        super.endCommunication(cost);
+        return cost;
+    }
+
+    @Override
+    public long rate(TariffPlan plan) {
+        return plan.calculateVideoCommCost(this);
+    }
+
     @Override
     public String toString() {
         return "VIDEO|" + super.toString() + String.format("%d|%d|%s",
                         super.getDuration(),
-                        Math.round(super.getCost()),
+                        Money.round(super.getCost()),
                         super.getInProgress() ? "ONGOING" : "FINISHED");
     }
 }
@@ -1,27 +1,38 @@
 package prr.communications;
 
-import prr.terminals.Terminal;
+import prr.clients.Money;
+import prr.clients.TariffPlan;
 
 public class VoiceCommunication extends InteractiveCommunication {
 
-    public VoiceCommunication(int key, Terminal sourceTerminal,
-                              Terminal destinationTerminal) {
-                                
-        super(key, sourceTerminal, destinationTerminal);
+    VoiceCommunication(CommunicationColumns columns, int row) {
+        super(columns, row);
     }
 
-    public double endInteractiveComm(long duration) {
+    public long endInteractiveComm(long duration) {
         super.setDuration(duration);
-        double cost = super.getSourceTerminal().calculateVoiceCommCost(this);
+        long cost = super.getSourceTerminal().calculateVoiceCommCost(this);
         super.endCommunication(cost);
         return cost;
     }
 
+    public long endInteractiveComm(long duration, long cost) {
+        super.setDuration(duration);
+        super.getSourceTerminal().getClient().chargeVoiceComm(cost);
+        super.endCommunication(cost);
+        return cost;
+    }
+
+    @Override
+    public long rate(TariffPlan plan) {
+        return plan.calculateVoiceCommCost(this);
+    }
+
     @Override
     public String toString() {
         return "VOICE|" + super.toString() + String.format("%d|%d|%s",
                         super.getDuration(),
-                        Math.round(super.getCost()),
+                        Money.round(super.getCost()),
                         super.getInProgress() ? "ONGOING" : "FINISHED");
     }
 }
@@ -0,0 +1,23 @@
+package prr.exceptions;
+
+/**
+ * Expected failure of an operation of the network, such as an unknown
+ * key or a terminal in the wrong state.
+ *
+ * These failures are part of the normal flow of the application (they
+ * are reported to the user), so they are created without a stack trace,
+ * which is costly to fill in, unless -Dexceptions.stacktrace=true.
+ */
+public abstract class DomainException extends Exception {
+
+    /** Serial number for serialization. */
+    private static final long serialVersionUID = 202210181200L;
+
+    /** Tells if the stack trace of domain exceptions is filled in. */
+    private static final boolean STACK_TRACE =
+            Boolean.getBoolean("exceptions.stacktrace");
+
+    protected DomainException() {
+        super(null, null, false, STACK_TRACE);
+    }
+}
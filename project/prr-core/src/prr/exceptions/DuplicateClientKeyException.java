@@ -1,6 +1,6 @@
 package prr.exceptions;
 
-public class DuplicateClientKeyException extends Exception {
+public class DuplicateClientKeyException extends DomainException {
 
     /** Serial number for serialization. */
     private static final long serialVersionUID = 202208091753L;
@@ -1,6 +1,6 @@
 package prr.exceptions;
 
-public class TerminalStateAlreadyOff extends Exception {
+public class TerminalStateAlreadyOff extends DomainException {
 
     /** Serial number for serialization. */
     private static final long serialVersionUID = 202208091753L;
@@ -0,0 +1,369 @@
+package prr.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import prr.Network;
+import prr.communications.Communication;
+import prr.query.Query;
+import prr.terminals.Terminal;
+
+/**
+ * Snapshot of the friend relation of a network, as a graph whose vertices
+ * are the terminals, numbered in the order of their keys, and with an
+ * edge from each terminal to each of its friends.
+ *
+ * Edges are kept in compressed sparse rows: the friends of vertex v are
+ * _friends[_offsets[v]] .. _friends[_offsets[v + 1] - 1], in increasing
+ * order. The same is kept for the terminals of which each vertex is a
+ * friend, and for the undirected graph where two terminals are neighbours
+ * if either is a friend of the other, which is the one used for
+ * components and triangles.
+ *
+ * Graphs with many vertices (-Dgraph.parallel, 10000 by default) are
+ * analyzed in parallel, on the pool of queries. The graph does not
+ * change with the network; a new one must be built to see changes.
+ */
+public class FriendGraph {
+    private static final int PARALLEL_THRESHOLD =
+            Integer.getInteger("graph.parallel", 10000);
+
+    private final Terminal[] _terminals;
+    private final int[] _ids;
+    private final int[] _offsets;
+    private final int[] _friends;
+    private final int[] _inOffsets;
+    private final int[] _inFriends;
+    private final int[] _neighbourOffsets;
+    private final int[] _neighbours;
+
+    private FriendGraph(Terminal[] terminals) {
+        int size = terminals.length;
+        _terminals = terminals;
+        _ids = new int[size];
+        for (int v = 0; v < size; v++) {
+            _ids[v] = terminals[v].getId();
+        }
+
+        _offsets = new int[size + 1];
+        for (int v = 0; v < size; v++) {
+            _offsets[v + 1] = _offsets[v] + terminals[v].getFriends().size();
+        }
+        _friends = new int[_offsets[size]];
+        int[] inDegrees = new int[size];
+        vertices().forEach(v -> {
+            int next = _offsets[v];
+            for (Terminal friend : _terminals[v].getFriends()) {
+                _friends[next++] = vertexOf(friend);
+            }
+        });
+        for (int friend : _friends) {
+            inDegrees[friend]++;
+        }
+
+        _inOffsets = new int[size + 1];
+        for (int v = 0; v < size; v++) {
+            _inOffsets[v + 1] = _inOffsets[v] + inDegrees[v];
+        }
+        _inFriends = new int[_friends.length];
+        int[] next = Arrays.copyOf(_inOffsets, size);
+        for (int v = 0; v < size; v++) {
+            for (int e = _offsets[v]; e < _offsets[v + 1]; e++) {
+                _inFriends[next[_friends[e]]++] = v;
+            }
+        }
+
+        int[] degrees = new int[size];
+        vertices().forEach(v -> degrees[v] = merge(v, null, 0));
+        _neighbourOffsets = new int[size + 1];
+        for (int v = 0; v < size; v++) {
+            _neighbourOffsets[v + 1] = _neighbourOffsets[v] + degrees[v];
+        }
+        _neighbours = new int[_neighbourOffsets[size]];
+        vertices().forEach(v -> merge(v, _neighbours, _neighbourOffsets[v]));
+    }
+
+    /**
+     * Build the graph of the current friends of the terminals of a
+     * network.
+     */
+    public static FriendGraph of(Network network) {
+        Collection<Terminal> all = network.getAllTerminals();
+        Terminal[] terminals = all.toArray(new Terminal[all.size()]);
+        if (terminals.length >= PARALLEL_THRESHOLD) {
+            return Query.inPool(() -> new FriendGraph(terminals));
+        }
+        return new FriendGraph(terminals);
+    }
+
+    public int size() {
+        return _terminals.length;
+    }
+
+    /**
+     * @return the number of (directed) friend edges
+     */
+    public int edges() {
+        return _friends.length;
+    }
+
+    public Terminal getTerminal(int vertex) {
+        return _terminals[vertex];
+    }
+
+    /**
+     * @return the vertex of a terminal, or -1 if it is not in the graph
+     */
+    public int vertexOf(Terminal terminal) {
+        int vertex = Arrays.binarySearch(_ids, terminal.getId());
+        return vertex >= 0 && _terminals[vertex] == terminal ? vertex : -1;
+    }
+
+    /**
+     * @return the number of friends of a vertex
+     */
+    public int degree(int vertex) {
+        return _offsets[vertex + 1] - _offsets[vertex];
+    }
+
+    /**
+     * @return the number of terminals of which a vertex is a friend
+     */
+    public int inDegree(int vertex) {
+        return _inOffsets[vertex + 1] - _inOffsets[vertex];
+    }
+
+    /**
+     * @return the number of terminals with each number of friends, from 0
+     *         to the largest one
+     */
+    public int[] degreeDistribution() {
+        int max = compute(() -> vertices().map(this::degree).max()
+                                          .orElse(-1));
+        int[] distribution = new int[max + 1];
+        for (int v = 0; v < size(); v++) {
+            distribution[degree(v)]++;
+        }
+        return distribution;
+    }
+
+    /**
+     * @return the terminals with the most friends, and then by key
+     */
+    public List<Terminal> topDegree(int count) {
+        return compute(() -> vertices().boxed()
+                .sorted(Comparator.comparingInt((Integer v) -> degree(v))
+                                  .reversed().thenComparingInt(v -> v))
+                .limit(count)
+                .map(v -> _terminals[v])
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return the terminals which are friends of both terminals, by key
+     */
+    public List<Terminal> mutualFriends(Terminal first, Terminal second) {
+        List<Terminal> mutual = new ArrayList<Terminal>();
+        int a = vertexOf(first);
+        int b = vertexOf(second);
+        if (a < 0 || b < 0) {
+            return mutual;
+        }
+        int i = _offsets[a];
+        int j = _offsets[b];
+        while (i < _offsets[a + 1] && j < _offsets[b + 1]) {
+            if (_friends[i] < _friends[j]) {
+                i++;
+            } else if (_friends[i] > _friends[j]) {
+                j++;
+            } else {
+                mutual.add(_terminals[_friends[i]]);
+                i++;
+                j++;
+            }
+        }
+        return mutual;
+    }
+
+    /**
+     * Find the connected components of the undirected graph.
+     *
+     * @return for each vertex, the smallest vertex of its component
+     */
+    public int[] components() {
+        AtomicIntegerArray parents = new AtomicIntegerArray(size());
+        for (int v = 0; v < size(); v++) {
+            parents.set(v, v);
+        }
+        return compute(() -> {
+            vertices().forEach(v -> {
+                for (int e = _neighbourOffsets[v];
+                     e < _neighbourOffsets[v + 1]; e++) {
+                    if (_neighbours[e] > v) {
+                        union(parents, v, _neighbours[e]);
+                    }
+                }
+            });
+            return vertices().map(v -> find(parents, v)).toArray();
+        });
+    }
+
+    public int countComponents() {
+        int[] components = components();
+        int count = 0;
+        for (int v = 0; v < components.length; v++) {
+            if (components[v] == v) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of sets of three terminals in which each pair is
+     *         a friend, one of the other
+     */
+    public long triangles() {
+        return compute(() -> vertices().mapToLong(v -> {
+            long count = 0;
+            for (int e = _neighbourOffsets[v];
+                 e < _neighbourOffsets[v + 1]; e++) {
+                int u = _neighbours[e];
+                if (u > v) {
+                    count += commonNeighboursAbove(v, u, u);
+                }
+            }
+            return count;
+        }).sum());
+    }
+
+    /**
+     * Communications from a terminal to a friend of one of its friends,
+     * which is not one of its own friends.
+     */
+    public List<Communication> friendsOfFriendsInContact(Network network) {
+        return Query.communications(network).where(communication -> {
+            int source = vertexOf(communication.getSourceTerminal());
+            int destination = vertexOf(communication.getDestinationTerminal());
+            return source >= 0 && destination >= 0 && source != destination
+                   && Arrays.binarySearch(_friends, _offsets[source],
+                           _offsets[source + 1], destination) < 0
+                   && friendOfFriend(source, destination);
+        }).list();
+    }
+
+    /**
+     * @return true if some friend of the source has the destination as a
+     *         friend
+     */
+    private boolean friendOfFriend(int source, int destination) {
+        int i = _offsets[source];
+        int j = _inOffsets[destination];
+        while (i < _offsets[source + 1] && j < _inOffsets[destination + 1]) {
+            if (_friends[i] < _inFriends[j]) {
+                i++;
+            } else if (_friends[i] > _inFriends[j]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long commonNeighboursAbove(int v, int u, int bound) {
+        long count = 0;
+        int i = _neighbourOffsets[v];
+        int j = _neighbourOffsets[u];
+        while (i < _neighbourOffsets[v + 1] && j < _neighbourOffsets[u + 1]) {
+            if (_neighbours[i] < _neighbours[j]) {
+                i++;
+            } else if (_neighbours[i] > _neighbours[j]) {
+                j++;
+            } else {
+                if (_neighbours[i] > bound) {
+                    count++;
+                }
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Merge the friends of a vertex and the terminals of which it is a
+     * friend, without repetitions.
+     *
+     * @param target where to write the neighbours, or null to count them
+     * @return the number of neighbours
+     */
+    private int merge(int v, int[] target, int start) {
+        int i = _offsets[v];
+        int j = _inOffsets[v];
+        int next = start;
+        while (i < _offsets[v + 1] || j < _inOffsets[v + 1]) {
+            int neighbour;
+            if (j == _inOffsets[v + 1]
+                    || (i < _offsets[v + 1] && _friends[i] < _inFriends[j])) {
+                neighbour = _friends[i++];
+            } else if (i == _offsets[v + 1] || _inFriends[j] < _friends[i]) {
+                neighbour = _inFriends[j++];
+            } else {
+                neighbour = _friends[i++];
+                j++;
+            }
+            if (target != null) {
+                target[next] = neighbour;
+            }
+            next++;
+        }
+        return next - start;
+    }
+
+    /**
+     * Link the roots of two vertices, the larger one to the smaller one,
+     * so that the root of a component ends up being its smallest vertex.
+     */
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+            int larger = Math.max(rootA, rootB);
+            if (parents.compareAndSet(larger, larger,
+                                      Math.min(rootA, rootB))) {
+                return;
+            }
+        }
+    }
+
+    private static int find(AtomicIntegerArray parents, int v) {
+        int parent;
+        while ((parent = parents.get(v)) != v) {
+            int grandparent = parents.get(parent);
+            parents.compareAndSet(v, parent, grandparent);
+            v = parent;
+        }
+        return v;
+    }
+
+    private IntStream vertices() {
+        IntStream vertices = IntStream.range(0, size());
+        return size() >= PARALLEL_THRESHOLD ? vertices.parallel() : vertices;
+    }
+
+    private <R> R compute(Supplier<R> computation) {
+        return size() >= PARALLEL_THRESHOLD ? Query.inPool(computation)
+                                            : computation.get();
+    }
+}
@@ -0,0 +1,4 @@
+package prr.legacy;
+
+interface BaseTariffPlan extends TariffPlan {
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class BasicTerminal extends Terminal {
+    private static final long serialVersionUID = 5494937757119753114L;
+}
@@ -0,0 +1,7 @@
+package prr.legacy;
+
+class BusyState extends TerminalState {
+    private static final long serialVersionUID = 34375892029757150L;
+
+    TerminalState _previousState;
+}
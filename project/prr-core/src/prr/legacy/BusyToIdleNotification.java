@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class BusyToIdleNotification extends Notification {
+    private static final long serialVersionUID = -2424305514397424631L;
+}
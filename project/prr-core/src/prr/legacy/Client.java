@@ -0,0 +1,24 @@
+package prr.legacy;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+class Client implements Serializable {
+    private static final long serialVersionUID = -768086854086176541L;
+
+    String _key;
+    String _name;
+    int _taxId;
+    ClientType _type;
+    boolean _receiveNotifications;
+    Map<String, Terminal> _terminals;
+    double _payments;
+    double _debts;
+    List<Notification> _notifications;
+    NotificationDeliveryMethod deliveryMethod;
+
+    class DefaultDeliveryMethod implements NotificationDeliveryMethod {
+        private static final long serialVersionUID = 1579330983302672665L;
+    }
+}
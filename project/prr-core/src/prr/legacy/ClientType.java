@@ -0,0 +1,12 @@
+package prr.legacy;
+
+import java.io.Serializable;
+
+abstract class ClientType implements Serializable {
+    private static final long serialVersionUID = -8027171955068750437L;
+
+    Client _client;
+    TariffPlan _tariffPlan;
+    int _textCommunicationStreak;
+    int _videoCommunicationStreak;
+}
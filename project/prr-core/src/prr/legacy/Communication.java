@@ -0,0 +1,14 @@
+package prr.legacy;
+
+import java.io.Serializable;
+
+abstract class Communication implements Serializable {
+    private static final long serialVersionUID = 2781230897207714610L;
+
+    int _key;
+    boolean _inProgress;
+    double _cost;
+    boolean _paid;
+    Terminal _sourceTerminal;
+    Terminal _destinationTerminal;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class FancyTerminal extends Terminal {
+    private static final long serialVersionUID = -324001563241713672L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class GoldBasePlan implements BaseTariffPlan {
+    private static final long serialVersionUID = 629763309002830428L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class GoldType extends ClientType {
+    private static final long serialVersionUID = 8694339278612933810L;
+}
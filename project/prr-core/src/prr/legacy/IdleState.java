@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class IdleState extends TerminalState {
+    private static final long serialVersionUID = 2645259108471066037L;
+}
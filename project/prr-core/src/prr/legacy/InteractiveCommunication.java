@@ -0,0 +1,7 @@
+package prr.legacy;
+
+abstract class InteractiveCommunication extends Communication {
+    private static final long serialVersionUID = -763624348423982666L;
+
+    long _duration;
+}
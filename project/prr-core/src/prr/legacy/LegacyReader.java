@@ -0,0 +1,208 @@
+package prr.legacy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import prr.NetworkBuilder;
+import prr.clients.Money;
+
+/**
+ * Reader of the networks saved with Java serialization, before the
+ * binary snapshot format.
+ *
+ * The classes of this package are frozen copies of the serialized fields
+ * of the domain classes of that time, so old files can be read whatever
+ * the domain classes look like now. Each class of the stream is resolved
+ * to the copy with the same simple name, and the objects which have been
+ * read are then converted with a NetworkBuilder.
+ */
+public class LegacyReader {
+
+    /** Only the copies and the standard classes they use can be read. */
+    private static final ObjectInputFilter FILTER =
+            ObjectInputFilter.Config.createFilter(
+                    "prr.legacy.*;java.lang.*;java.util.*;!*");
+
+    private static class LegacyInputStream extends ObjectInputStream {
+
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+            setObjectInputFilter(FILTER);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+                throws IOException, ClassNotFoundException {
+            ObjectStreamClass descriptor = super.readClassDescriptor();
+            if (!descriptor.getName().startsWith("prr.")) {
+                return descriptor;
+            }
+
+            // The computed serial numbers of the old classes depend on the
+            // compiler, so the copy is used as long as the fields match.
+            ObjectStreamClass local = ObjectStreamClass.lookup(
+                    resolveClass(descriptor));
+            if (local == null || local.getFields().length
+                                 != descriptor.getFields().length) {
+                throw new InvalidClassException(descriptor.getName(),
+                                                "unknown legacy class");
+            }
+            for (int i = 0; i < descriptor.getFields().length; i++) {
+                if (!descriptor.getFields()[i].getName().equals(
+                        local.getFields()[i].getName()) ||
+                        descriptor.getFields()[i].getTypeCode() !=
+                        local.getFields()[i].getTypeCode()) {
+                    throw new InvalidClassException(descriptor.getName(),
+                                                    "unknown legacy field");
+                }
+            }
+            return local;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass descriptor)
+                throws IOException, ClassNotFoundException {
+            String name = descriptor.getName();
+            if (!name.startsWith("prr.")) {
+                return super.resolveClass(descriptor);
+            }
+            return Class.forName(LegacyReader.class.getPackageName() +
+                                 name.substring(name.lastIndexOf('.')),
+                                 false, LegacyReader.class.getClassLoader());
+        }
+    }
+
+    private LegacyReader() {
+        // static methods only
+    }
+
+    /**
+     * Read a network saved with Java serialization.
+     *
+     * @param in the stream to read from, at the start of the serialized
+     *           network
+     * @return the network which has been read
+     * @throws IOException if there is an error while reading or the
+     *                     stream does not contain a saved network
+     */
+    public static prr.Network read(InputStream in) throws IOException {
+        Object object;
+        try {
+            object = new LegacyInputStream(in).readObject();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidClassException(e.getMessage());
+        }
+        if (!(object instanceof Network network)) {
+            throw new InvalidClassException("not a saved network");
+        }
+        try {
+            return convert(network);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
+        }
+    }
+
+    /**
+     * Rebuild a network from the copies of its objects.
+     */
+    private static prr.Network convert(Network network) {
+        NetworkBuilder builder = new NetworkBuilder();
+        Map<Client, Integer> clients = new IdentityHashMap<Client, Integer>();
+        Map<Terminal, Integer> terminals =
+                new IdentityHashMap<Terminal, Integer>();
+
+        for (Client client : network._clients.values()) {
+            ClientType type = client._type;
+            int id = builder.addClient(client._key, client._name,
+                    client._taxId, typeName(type),
+                    type._textCommunicationStreak,
+                    type._videoCommunicationStreak,
+                    client._receiveNotifications,
+                    Money.fromDouble(client._payments),
+                    Money.fromDouble(client._debts));
+            for (Notification notification : client._notifications) {
+                builder.addNotification(id, typeName(notification),
+                                        notification._terminalKey);
+            }
+            clients.put(client, id);
+        }
+
+        for (Terminal terminal : network._terminals.values()) {
+            TerminalState previous = terminal._state instanceof BusyState busy
+                                     ? busy._previousState : null;
+            terminals.put(terminal, builder.addTerminal(
+                    terminal instanceof FancyTerminal ? "FANCY" : "BASIC",
+                    terminal._key, clients.get(terminal._client),
+                    stateName(terminal._state),
+                    previous == null ? null : stateName(previous),
+                    Money.fromDouble(terminal._payments),
+                    Money.fromDouble(terminal._debts)));
+        }
+        for (Terminal terminal : network._terminals.values()) {
+            int id = terminals.get(terminal);
+            for (Terminal friend : terminal._friends.values()) {
+                builder.addFriend(id, terminals.get(friend));
+            }
+            for (Client client : terminal._contactAttempts) {
+                builder.addContactAttempt(id, clients.get(client));
+            }
+        }
+
+        builder.setCommunicationsCounter(network._communicationsCounter);
+        for (Communication communication : network._communications) {
+            String type = "TEXT";
+            long duration = 0;
+            String message = null;
+            if (communication instanceof TextCommunication text) {
+                message = text._message;
+            } else {
+                type = communication instanceof VideoCommunication
+                       ? "VIDEO" : "VOICE";
+                duration = ((InteractiveCommunication) communication)._duration;
+            }
+            builder.addCommunication(type, communication._key,
+                    terminals.get(communication._sourceTerminal),
+                    terminals.get(communication._destinationTerminal),
+                    communication._inProgress, communication._paid,
+                    Money.fromDouble(communication._cost), duration, message);
+        }
+
+        return builder.build();
+    }
+
+    private static String typeName(ClientType type) {
+        if (type instanceof GoldType) {
+            return "GOLD";
+        }
+        return type instanceof PlatinumType ? "PLATINUM" : "NORMAL";
+    }
+
+    private static String typeName(Notification notification) {
+        if (notification instanceof OffToIdleNotification) {
+            return "O2I";
+        } else if (notification instanceof OffToSilentNotification) {
+            return "O2S";
+        } else if (notification instanceof SilentToIdleNotification) {
+            return "S2I";
+        }
+        return "B2I";
+    }
+
+    private static String stateName(TerminalState state) {
+        if (state instanceof OffState) {
+            return "OFF";
+        } else if (state instanceof SilentState) {
+            return "SILENCE";
+        } else if (state instanceof BusyState) {
+            return "BUSY";
+        }
+        return "IDLE";
+    }
+}
@@ -0,0 +1,15 @@
+package prr.legacy;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+class Network implements Serializable {
+    private static final long serialVersionUID = 202208091753L;
+
+    Map<String, Client> _clients;
+    Map<String, Terminal> _terminals;
+    boolean _changed;
+    List<Communication> _communications;
+    int _communicationsCounter;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class NormalBasePlan implements BaseTariffPlan {
+    private static final long serialVersionUID = 1164625107701892684L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class NormalType extends ClientType {
+    private static final long serialVersionUID = 5439202627638201195L;
+}
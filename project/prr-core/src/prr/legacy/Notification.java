@@ -0,0 +1,9 @@
+package prr.legacy;
+
+import java.io.Serializable;
+
+class Notification implements Serializable {
+    private static final long serialVersionUID = 959476028705199000L;
+
+    String _terminalKey;
+}
@@ -0,0 +1,6 @@
+package prr.legacy;
+
+import java.io.Serializable;
+
+interface NotificationDeliveryMethod extends Serializable {
+}
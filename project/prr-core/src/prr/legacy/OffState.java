@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class OffState extends TerminalState {
+    private static final long serialVersionUID = 1415877693070343770L;
+}
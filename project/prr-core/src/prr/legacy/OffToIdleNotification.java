@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class OffToIdleNotification extends Notification {
+    private static final long serialVersionUID = -4904883345114229132L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class OffToSilentNotification extends Notification {
+    private static final long serialVersionUID = -9087511248937085596L;
+}
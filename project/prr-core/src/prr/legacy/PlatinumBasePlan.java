@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class PlatinumBasePlan implements BaseTariffPlan {
+    private static final long serialVersionUID = -3820840896907614523L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class PlatinumType extends ClientType {
+    private static final long serialVersionUID = 8216766068276443867L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class SilentState extends TerminalState {
+    private static final long serialVersionUID = 8913673354068218801L;
+}
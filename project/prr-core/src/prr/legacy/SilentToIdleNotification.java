@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class SilentToIdleNotification extends Notification {
+    private static final long serialVersionUID = 6575806959806260885L;
+}
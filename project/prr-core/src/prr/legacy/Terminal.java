@@ -0,0 +1,19 @@
+package prr.legacy;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+abstract class Terminal implements Serializable {
+    private static final long serialVersionUID = 202208091753L;
+
+    String _key;
+    Client _client;
+    TerminalState _state;
+    double _payments;
+    double _debts;
+    Map<String, Terminal> _friends;
+    Map<Integer, Communication> _communications;
+    InteractiveCommunication _onGoingCommunication;
+    Set<Client> _contactAttempts;
+}
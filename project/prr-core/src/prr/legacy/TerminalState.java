@@ -0,0 +1,9 @@
+package prr.legacy;
+
+import java.io.Serializable;
+
+abstract class TerminalState implements Serializable {
+    private static final long serialVersionUID = -1527375487149199711L;
+
+    Terminal _terminal;
+}
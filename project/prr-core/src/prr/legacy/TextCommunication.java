@@ -0,0 +1,7 @@
+package prr.legacy;
+
+class TextCommunication extends Communication {
+    private static final long serialVersionUID = 4377994953027225307L;
+
+    String _message;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class VideoCommunication extends InteractiveCommunication {
+    private static final long serialVersionUID = 3568456603893202283L;
+}
@@ -0,0 +1,5 @@
+package prr.legacy;
+
+class VoiceCommunication extends InteractiveCommunication {
+    private static final long serialVersionUID = 6944123599287618725L;
+}
@@ -0,0 +1,61 @@
+package prr.query;
+
+import java.util.Comparator;
+
+import prr.Network;
+import prr.clients.Client;
+import prr.clients.ClientType;
+
+/**
+ * Criteria and orders of queries over clients.
+ */
+public final class ClientCriteria {
+    /** Order of the keys, in any case. */
+    public static final Comparator<Client> BY_KEY = (client1, client2) ->
+            String.CASE_INSENSITIVE_ORDER.compare(client1.getKey(),
+                                                  client2.getKey());
+
+    /** Decreasing debts, and then order of the keys. */
+    public static final Comparator<Client> BY_DEBTS =
+            Comparator.comparingLong(Client::getDebts).reversed()
+                      .thenComparing(BY_KEY);
+
+    private ClientCriteria() {
+        // static methods only
+    }
+
+    public static Criterion<Client> withDebts() {
+        return new Criterion<Client>(Client::hasDebts,
+                                     Network::getClientsWithDebts, BY_DEBTS);
+    }
+
+    public static Criterion<Client> withoutDebts() {
+        return new Criterion<Client>(client -> !client.hasDebts(),
+                                     Network::getClientsWithoutDebts, null);
+    }
+
+    /**
+     * @param amount an amount of Money
+     */
+    public static Criterion<Client> debtsAbove(long amount) {
+        if (amount < 0) {
+            // the index only has the clients with debts
+            return new Criterion<Client>(client -> client.getDebts() > amount);
+        }
+        return new Criterion<Client>(client -> client.getDebts() > amount,
+                network -> network.getClientsWithDebtsAbove(amount), BY_DEBTS);
+    }
+
+    /**
+     * @param type NORMAL, GOLD or PLATINUM
+     */
+    public static Criterion<Client> ofType(String type) {
+        ClientType clientType = ClientType.valueOf(type);
+        return new Criterion<Client>(
+                client -> client.getType() == clientType);
+    }
+
+    public static Criterion<Client> receivingNotifications() {
+        return new Criterion<Client>(Client::canReceiveNotifications);
+    }
+}
@@ -0,0 +1,116 @@
+package prr.query;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+
+import prr.Network;
+import prr.clients.Client;
+import prr.clients.ClientType;
+import prr.communications.Communication;
+import prr.communications.InteractiveCommunication;
+import prr.communications.TextCommunication;
+import prr.communications.VideoCommunication;
+import prr.communications.VoiceCommunication;
+import prr.exceptions.UnknownClientKeyException;
+
+/**
+ * Criteria and orders of queries over communications.
+ */
+public final class CommunicationCriteria {
+    /** Order of the keys. */
+    public static final Comparator<Communication> BY_KEY =
+            Comparator.comparingInt(Communication::getKey);
+
+    /** Decreasing cost, and then order of the keys. */
+    public static final Comparator<Communication> BY_COST =
+            Comparator.comparingLong(Communication::getCost).reversed()
+                      .thenComparing(BY_KEY);
+
+    private CommunicationCriteria() {
+        // static methods only
+    }
+
+    public static Criterion<Communication> fromClient(Client client) {
+        return new Criterion<Communication>(
+                communication -> communication.getSourceTerminal()
+                                              .getClient() == client,
+                network -> {
+                    try {
+                        return network.getCommunicationsFromClient(
+                                client.getKey());
+                    } catch (UnknownClientKeyException e) {
+                        return Collections.emptyList();
+                    }
+                }, null);
+    }
+
+    public static Criterion<Communication> toClient(Client client) {
+        return new Criterion<Communication>(
+                communication -> communication.getDestinationTerminal()
+                                              .getClient() == client,
+                network -> {
+                    try {
+                        return network.getCommunicationsToClient(
+                                client.getKey());
+                    } catch (UnknownClientKeyException e) {
+                        return Collections.emptyList();
+                    }
+                }, null);
+    }
+
+    /**
+     * @param type TEXT, VOICE or VIDEO
+     */
+    public static Criterion<Communication> ofType(String type) {
+        Class<? extends Communication> typeClass = switch (type) {
+            case "TEXT" -> TextCommunication.class;
+            case "VOICE" -> VoiceCommunication.class;
+            case "VIDEO" -> VideoCommunication.class;
+            default -> throw new IllegalArgumentException(type);
+        };
+        return new Criterion<Communication>(typeClass::isInstance);
+    }
+
+    /**
+     * Interactive communications longer than a duration.
+     */
+    public static Criterion<Communication> longerThan(long duration) {
+        return new Criterion<Communication>(communication ->
+                communication instanceof InteractiveCommunication interactive
+                && interactive.getDuration() > duration);
+    }
+
+    public static Criterion<Communication> inProgress() {
+        return new Criterion<Communication>(Communication::getInProgress);
+    }
+
+    public static Criterion<Communication> paid() {
+        return new Criterion<Communication>(Communication::getPaid);
+    }
+
+    /**
+     * Communications whose destination is a friend of their source.
+     */
+    public static Criterion<Communication> betweenFriends() {
+        return new Criterion<Communication>(Communication::isFriend);
+    }
+
+    /**
+     * @param type NORMAL, GOLD or PLATINUM
+     */
+    public static Criterion<Communication> fromClientType(String type) {
+        ClientType clientType = ClientType.valueOf(type);
+        return new Criterion<Communication>(communication ->
+                communication.getSourceTerminal().getClient().getType()
+                == clientType);
+    }
+
+    /**
+     * @param amount an amount of Money
+     */
+    public static Criterion<Communication> costAbove(long amount) {
+        return new Criterion<Communication>(
+                communication -> communication.getCost() > amount);
+    }
+}
@@ -0,0 +1,58 @@
+package prr.query;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import prr.Network;
+
+/**
+ * Condition of a query which may be answered by an index of the network:
+ * besides testing an element, it can give the elements of the network
+ * which satisfy it, in the order of the index.
+ */
+public class Criterion<T> implements Predicate<T> {
+    private final Predicate<? super T> _predicate;
+    private final Function<Network, Collection<T>> _index;
+    private final Comparator<? super T> _order;
+
+    /**
+     * A criterion without an index.
+     */
+    public Criterion(Predicate<? super T> predicate) {
+        this(predicate, null, null);
+    }
+
+    /**
+     * @param predicate the condition
+     * @param index     gives the elements of a network which satisfy the
+     *                  condition, or null if there is no index
+     * @param order     the order of the elements given by the index, or
+     *                  null if they are in their natural order
+     */
+    public Criterion(Predicate<? super T> predicate,
+                     Function<Network, Collection<T>> index,
+                     Comparator<? super T> order) {
+        _predicate = predicate;
+        _index = index;
+        _order = order;
+    }
+
+    @Override
+    public boolean test(T element) {
+        return _predicate.test(element);
+    }
+
+    boolean isIndexed() {
+        return _index != null;
+    }
+
+    Collection<T> candidates(Network network) {
+        return _index.apply(network);
+    }
+
+    Comparator<? super T> getOrder() {
+        return _order;
+    }
+}
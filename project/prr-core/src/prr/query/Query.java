@@ -0,0 +1,182 @@
+package prr.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import prr.Network;
+import prr.clients.Client;
+import prr.communications.Communication;
+import prr.terminals.Terminal;
+
+/**
+ * Query over the clients, the terminals or the communications of a
+ * network, made of conditions, an order and a limit. For instance, the
+ * video communications longer than 10 from GOLD clients to terminals
+ * which are not their friends are
+ *
+ * <pre>
+ * Query.communications(network)
+ *      .where(CommunicationCriteria.ofType("VIDEO"))
+ *      .where(CommunicationCriteria.longerThan(10))
+ *      .where(CommunicationCriteria.fromClientType("GOLD"))
+ *      .where(CommunicationCriteria.betweenFriends().negate())
+ *      .list();
+ * </pre>
+ *
+ * When some criteria have an index, the query only goes through the
+ * elements of the smallest one, and it is not sorted again if the index
+ * is already in the order asked for. Otherwise every element is tested.
+ * Elements are in their natural order (by key) unless another one is
+ * given.
+ *
+ * Queries over many elements (-Dquery.parallel, 10000 by default) run in
+ * parallel, on a pool of -Dquery.threads threads (the number of
+ * processors by default). Their results are in the same order as if they
+ * ran sequentially. The network must not be changed while they run.
+ */
+public class Query<T> {
+    private static final int PARALLEL_THRESHOLD =
+            Integer.getInteger("query.parallel", 10000);
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Integer.getInteger("query.threads",
+                               Runtime.getRuntime().availableProcessors()),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool
+                        .defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("query-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+
+    private final Network _network;
+    private final Function<Network, Collection<T>> _all;
+    private final Comparator<? super T> _naturalOrder;
+    private final List<Predicate<? super T>> _predicates =
+            new ArrayList<Predicate<? super T>>();
+    private final List<Criterion<T>> _indexed = new ArrayList<Criterion<T>>();
+    private Comparator<? super T> _order;
+    private int _limit = Integer.MAX_VALUE;
+
+    private Query(Network network, Function<Network, Collection<T>> all,
+                  Comparator<? super T> naturalOrder) {
+        _network = network;
+        _all = all;
+        _naturalOrder = naturalOrder;
+    }
+
+    public static Query<Client> clients(Network network) {
+        return new Query<Client>(network, Network::getAllClients,
+                                 ClientCriteria.BY_KEY);
+    }
+
+    public static Query<Terminal> terminals(Network network) {
+        return new Query<Terminal>(network, Network::getAllTerminals,
+                                   TerminalCriteria.BY_KEY);
+    }
+
+    public static Query<Communication> communications(Network network) {
+        return new Query<Communication>(network, Network::getAllCommunications,
+                                        CommunicationCriteria.BY_KEY);
+    }
+
+    /**
+     * Add a condition.
+     */
+    public Query<T> where(Predicate<? super T> predicate) {
+        _predicates.add(predicate);
+        return this;
+    }
+
+    /**
+     * Add a condition which may be answered by an index.
+     */
+    public Query<T> where(Criterion<T> criterion) {
+        _predicates.add(criterion);
+        if (criterion.isIndexed()) {
+            _indexed.add(criterion);
+        }
+        return this;
+    }
+
+    public Query<T> orderBy(Comparator<? super T> order) {
+        _order = order;
+        return this;
+    }
+
+    public Query<T> limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("negative limit " + limit);
+        }
+        _limit = limit;
+        return this;
+    }
+
+    public List<T> list() {
+        return run(stream -> stream.collect(Collectors.toList()));
+    }
+
+    public <R> List<R> select(Function<? super T, ? extends R> projection) {
+        return run(stream -> stream.map(projection)
+                                   .collect(Collectors.<R>toList()));
+    }
+
+    public long count() {
+        return run(Stream::count);
+    }
+
+    /**
+     * Run an operation on the stream of the query, in the pool if the
+     * stream is parallel.
+     */
+    private <R> R run(Function<Stream<T>, R> operation) {
+        Stream<T> stream = stream();
+        if (!stream.isParallel()) {
+            return operation.apply(stream);
+        }
+        return inPool(() -> operation.apply(stream));
+    }
+
+    /**
+     * Run a computation on the pool of queries, so that its parallel
+     * streams use the threads of the pool.
+     */
+    public static <R> R inPool(Supplier<R> computation) {
+        return POOL.submit(computation::get).join();
+    }
+
+    private Stream<T> stream() {
+        Collection<T> source = null;
+        Comparator<? super T> sourceOrder = null;
+        for (Criterion<T> criterion : _indexed) {
+            Collection<T> candidates = criterion.candidates(_network);
+            if (source == null || candidates.size() < source.size()) {
+                source = candidates;
+                sourceOrder = criterion.getOrder();
+            }
+        }
+
+        if (source == null) {
+            source = _all.apply(_network);
+        }
+        Stream<T> stream = source.size() >= PARALLEL_THRESHOLD
+                           ? source.parallelStream() : source.stream();
+
+        for (Predicate<? super T> predicate : _predicates) {
+            stream = stream.filter(predicate);
+        }
+        if (_order != null ? _order != sourceOrder : sourceOrder != null) {
+            stream = stream.sorted(_order != null ? _order : _naturalOrder);
+        }
+        return stream.limit(_limit);
+    }
+}
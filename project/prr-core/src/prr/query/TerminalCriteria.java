@@ -0,0 +1,62 @@
+package prr.query;
+
+import java.util.Comparator;
+
+import prr.Network;
+import prr.clients.Client;
+import prr.terminals.FancyTerminal;
+import prr.terminals.Terminal;
+import prr.terminals.TerminalState;
+
+/**
+ * Criteria and orders of queries over terminals.
+ */
+public final class TerminalCriteria {
+    /** Order of the keys. */
+    public static final Comparator<Terminal> BY_KEY =
+            Comparator.comparing(Terminal::getKey);
+
+    /** Decreasing balance, and then order of the keys. */
+    public static final Comparator<Terminal> BY_BALANCE =
+            Comparator.comparingLong(
+                    (Terminal terminal) -> terminal.getPayments()
+                                           - terminal.getDebts())
+                      .reversed().thenComparing(BY_KEY);
+
+    private TerminalCriteria() {
+        // static methods only
+    }
+
+    public static Criterion<Terminal> unused() {
+        return new Criterion<Terminal>(Terminal::isUnused,
+                                       Network::getUnusedTerminals, null);
+    }
+
+    public static Criterion<Terminal> withPositiveBalance() {
+        return new Criterion<Terminal>(Terminal::hasPositiveBalance,
+                Network::getTerminalsWithPositiveBalance, null);
+    }
+
+    /**
+     * @param type BASIC or FANCY
+     */
+    public static Criterion<Terminal> ofType(String type) {
+        boolean fancy = type.equals("FANCY");
+        return new Criterion<Terminal>(
+                terminal -> (terminal instanceof FancyTerminal) == fancy);
+    }
+
+    /**
+     * @param state IDLE, OFF, SILENCE or BUSY
+     */
+    public static Criterion<Terminal> inState(String state) {
+        TerminalState terminalState = TerminalState.valueOf(state);
+        return new Criterion<Terminal>(
+                terminal -> terminal.getState() == terminalState);
+    }
+
+    public static Criterion<Terminal> ofClient(Client client) {
+        return new Criterion<Terminal>(
+                terminal -> terminal.getClient() == client);
+    }
+}
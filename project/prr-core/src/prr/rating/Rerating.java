@@ -0,0 +1,292 @@
+package prr.rating;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+import prr.Network;
+import prr.clients.Client;
+import prr.clients.ClientType;
+import prr.clients.TariffPlan;
+import prr.communications.Communication;
+import prr.exceptions.InvalidCommunicationKey;
+import prr.query.Query;
+import prr.terminals.Terminal;
+
+/**
+ * Costs of the finished communications of a network, calculated again
+ * with other tariff plans, and how much they differ from the costs that
+ * were charged. For instance, the difference for each client if the
+ * tariffs of a file were in use is
+ *
+ * <pre>
+ * Rerating.of(network, Tariffs.read(Path.of("tariffs.properties"))
+ *                             .getPlans())
+ *         .getClientDeltas();
+ * </pre>
+ *
+ * Each communication is rated as it was charged: with the plan given
+ * for the type the client of its source terminal had then (NORMAL, GOLD
+ * or PLATINUM), or with the current plan of that type if none is given,
+ * and as a communication to a friend if its destination was one then
+ * (see Communication.setRating). So rerating with the tariffs which
+ * charged the communications changes nothing. Plans only calculate
+ * costs, so rerating changes nothing in the network until it is
+ * committed; only the costs of the communications not paid yet are then
+ * changed.
+ *
+ * How the communications read from snapshots older than the ratings
+ * were charged is not known: they are rated with the current type of
+ * the client and the current friends of the terminal, so their costs
+ * may change even with the same tariffs.
+ *
+ * Networks with many communications (-Drating.parallel, 10000 by
+ * default) are rated in parallel, on the pool of queries. The network
+ * must not be changed while they are rated.
+ */
+public class Rerating {
+    private static final int PARALLEL_THRESHOLD =
+            Integer.getInteger("rating.parallel", 10000);
+
+    private final Network _network;
+    private final Terminal[] _terminals;
+    private final int[] _ids;
+    private final AtomicLongArray _unpaidDeltas;
+    private final AtomicLongArray _paidDeltas;
+    private final Changes _changes;
+
+    private Rerating(Network network, Map<String, ? extends TariffPlan> plans) {
+        _network = network;
+        Collection<Terminal> terminals = network.getAllTerminals();
+        _terminals = terminals.toArray(new Terminal[terminals.size()]);
+        _ids = new int[_terminals.length];
+        for (int i = 0; i < _terminals.length; i++) {
+            _ids[i] = _terminals[i].getId();
+        }
+        _unpaidDeltas = new AtomicLongArray(_terminals.length);
+        _paidDeltas = new AtomicLongArray(_terminals.length);
+        _changes = rate(network, plans);
+    }
+
+    /**
+     * Rate the finished communications of a network again.
+     *
+     * @param plans the tariff plan for each type of client
+     */
+    public static Rerating of(Network network,
+                              Map<String, ? extends TariffPlan> plans) {
+        return new Rerating(network, plans);
+    }
+
+    private Changes rate(Network network,
+                         Map<String, ? extends TariffPlan> plans) {
+        Collection<Communication> communications =
+                network.getAllCommunications();
+        Collector<Communication, Changes, Changes> collector = Collector.of(
+                Changes::new, (changes, communication) ->
+                        rate(communication, plans, changes),
+                Changes::merge);
+        if (communications.size() < PARALLEL_THRESHOLD) {
+            return communications.stream().collect(collector);
+        }
+        Stream<Communication> stream = communications.parallelStream();
+        return Query.inPool(() -> stream.collect(collector));
+    }
+
+    private void rate(Communication communication,
+                      Map<String, ? extends TariffPlan> plans,
+                      Changes changes) {
+        if (communication.getInProgress()) {
+            return;
+        }
+        changes._rated++;
+        Terminal source = communication.getSourceTerminal();
+        ClientType type = communication.getRatedType();
+        if (type == null) {
+            // saved before ratings were recorded
+            type = source.getClient().getType();
+        }
+        TariffPlan plan = plans.get(type.toString());
+        long cost = communication.rate(
+                plan != null ? plan : type.getTariffPlan());
+        long delta = cost - communication.getCost();
+        if (delta == 0) {
+            return;
+        }
+        int terminal = Arrays.binarySearch(_ids, source.getId());
+        if (communication.getPaid()) {
+            _paidDeltas.addAndGet(terminal, delta);
+        } else {
+            _unpaidDeltas.addAndGet(terminal, delta);
+            changes.add(communication.getKey(), communication.getCost(), cost);
+        }
+    }
+
+    /**
+     * @return the number of communications rated
+     */
+    public long getRated() {
+        return _changes._rated;
+    }
+
+    /**
+     * @return the number of communications not paid yet whose cost changes
+     */
+    public int getChanged() {
+        return _changes._size;
+    }
+
+    /**
+     * @return how much more (or less, if negative) all the communications
+     *         cost, in Money
+     */
+    public long getDelta() {
+        return getUnpaidDelta() + getPaidDelta();
+    }
+
+    /**
+     * @return how much more the communications not paid yet cost, in Money
+     */
+    public long getUnpaidDelta() {
+        long delta = 0;
+        for (int i = 0; i < _terminals.length; i++) {
+            delta += _unpaidDeltas.get(i);
+        }
+        return delta;
+    }
+
+    /**
+     * @return how much more the communications already paid cost, in Money
+     */
+    public long getPaidDelta() {
+        long delta = 0;
+        for (int i = 0; i < _terminals.length; i++) {
+            delta += _paidDeltas.get(i);
+        }
+        return delta;
+    }
+
+    /**
+     * @return how much more the communications started by a terminal
+     *         cost, in Money
+     */
+    public long getTerminalDelta(Terminal terminal) {
+        int i = Arrays.binarySearch(_ids, terminal.getId());
+        return i < 0 ? 0 : _unpaidDeltas.get(i) + _paidDeltas.get(i);
+    }
+
+    /**
+     * @return how much more the communications of the terminals of a client
+     *         cost, in Money
+     */
+    public long getClientDelta(Client client) {
+        long delta = 0;
+        for (Terminal terminal : client.getTerminals()) {
+            delta += getTerminalDelta(terminal);
+        }
+        return delta;
+    }
+
+    /**
+     * @return the terminals whose communications cost differently, with
+     *         the difference, by key
+     */
+    public Map<Terminal, Long> getTerminalDeltas() {
+        Map<Terminal, Long> deltas = new LinkedHashMap<Terminal, Long>();
+        for (int i = 0; i < _terminals.length; i++) {
+            long delta = _unpaidDeltas.get(i) + _paidDeltas.get(i);
+            if (delta != 0) {
+                deltas.put(_terminals[i], delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * @return the clients whose communications cost differently, with the
+     *         difference, by key
+     */
+    public Map<Client, Long> getClientDeltas() {
+        Map<Client, Long> deltas = new LinkedHashMap<Client, Long>();
+        for (Client client : _network.getAllClients()) {
+            long delta = getClientDelta(client);
+            if (delta != 0) {
+                deltas.put(client, delta);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Change the costs of the communications not paid yet in the network,
+     * charging or crediting their terminals and clients. Communications
+     * which were paid or whose cost changed since they were rated are left
+     * as they are.
+     *
+     * @return the number of communications changed
+     */
+    public int commit() {
+        int committed = 0;
+        for (int i = 0; i < _changes._size; i++) {
+            Communication communication =
+                    _network.getCommunication(_changes._keys[i]);
+            if (communication == null || communication.getPaid()
+                    || communication.getCost() != _changes._oldCosts[i]) {
+                continue;
+            }
+            try {
+                communication.getSourceTerminal().rerateCommunication(
+                        _network, _changes._keys[i], _changes._costs[i]);
+                committed++;
+            } catch (InvalidCommunicationKey e) {
+                // not finished any more: left as it is
+            }
+        }
+        return committed;
+    }
+
+    /**
+     * New costs of the communications not paid yet, in the order of the
+     * communications.
+     */
+    private static class Changes {
+        private int[] _keys = new int[16];
+        private long[] _oldCosts = new long[16];
+        private long[] _costs = new long[16];
+        private int _size = 0;
+        private long _rated = 0;
+
+        void add(int key, long oldCost, long cost) {
+            if (_size == _keys.length) {
+                grow(2 * _size);
+            }
+            _keys[_size] = key;
+            _oldCosts[_size] = oldCost;
+            _costs[_size] = cost;
+            _size++;
+        }
+
+        Changes merge(Changes other) {
+            if (_size + other._size > _keys.length) {
+                grow(_size + other._size);
+            }
+            System.arraycopy(other._keys, 0, _keys, _size, other._size);
+            System.arraycopy(other._oldCosts, 0, _oldCosts, _size,
+                             other._size);
+            System.arraycopy(other._costs, 0, _costs, _size, other._size);
+            _size += other._size;
+            _rated += other._rated;
+            return this;
+        }
+
+        private void grow(int capacity) {
+            _keys = Arrays.copyOf(_keys, capacity);
+            _oldCosts = Arrays.copyOf(_oldCosts, capacity);
+            _costs = Arrays.copyOf(_costs, capacity);
+        }
+    }
+}
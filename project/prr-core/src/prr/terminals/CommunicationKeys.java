@@ -0,0 +1,46 @@
+package prr.terminals;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of the keys of the communications of a terminal, kept as
+ * an array of ints. Communications are created with increasing keys, so
+ * keys are almost always added at the end.
+ */
+class CommunicationKeys {
+    private int[] _keys = new int[4];
+    private int _size = 0;
+
+    public int size() {
+        return _size;
+    }
+
+    public int get(int index) {
+        return _keys[index];
+    }
+
+    public boolean contains(int key) {
+        return Arrays.binarySearch(_keys, 0, _size, key) >= 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(_keys, _size);
+    }
+
+    public void add(int key) {
+        int index = _size;
+        if (_size > 0 && key <= _keys[_size - 1]) {
+            index = Arrays.binarySearch(_keys, 0, _size, key);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+        }
+        if (_size == _keys.length) {
+            _keys = Arrays.copyOf(_keys, 2 * _size);
+        }
+        System.arraycopy(_keys, index, _keys, index + 1, _size - index);
+        _keys[index] = key;
+        _size++;
+    }
+}
@@ -0,0 +1,71 @@
+package prr.terminals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Set of the friends of a terminal, kept as a sorted array of the ids of
+ * the friends (see Terminal.getId) and an array with the friends in the
+ * same order. Ids have the order of the keys.
+ */
+class FriendSet {
+    private int[] _ids = new int[0];
+    private Terminal[] _terminals = new Terminal[0];
+    private int _size = 0;
+
+    public int size() {
+        return _size;
+    }
+
+    public boolean contains(Terminal terminal) {
+        return Arrays.binarySearch(_ids, 0, _size, terminal.getId()) >= 0;
+    }
+
+    /**
+     * @return the friends, in the order of their keys
+     */
+    public List<Terminal> terminals() {
+        return Collections.unmodifiableList(
+                Arrays.asList(_terminals).subList(0, _size));
+    }
+
+    /**
+     * @return false if the terminal was already a friend
+     */
+    public boolean add(Terminal terminal) {
+        int index = Arrays.binarySearch(_ids, 0, _size, terminal.getId());
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        if (_size == _ids.length) {
+            int capacity = Math.max(4, 2 * _size);
+            _ids = Arrays.copyOf(_ids, capacity);
+            _terminals = Arrays.copyOf(_terminals, capacity);
+        }
+        System.arraycopy(_ids, index, _ids, index + 1, _size - index);
+        System.arraycopy(_terminals, index, _terminals, index + 1,
+                         _size - index);
+        _ids[index] = terminal.getId();
+        _terminals[index] = terminal;
+        _size++;
+        return true;
+    }
+
+    /**
+     * @return false if the terminal was not a friend
+     */
+    public boolean remove(Terminal terminal) {
+        int index = Arrays.binarySearch(_ids, 0, _size, terminal.getId());
+        if (index < 0) {
+            return false;
+        }
+        _size--;
+        System.arraycopy(_ids, index + 1, _ids, index, _size - index);
+        System.arraycopy(_terminals, index + 1, _terminals, index,
+                         _size - index);
+        _terminals[_size] = null;
+        return true;
+    }
+}
@@ -1,16 +1,14 @@
 package prr.terminals;
 
-import java.io.Serializable;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.OptionalLong;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
 
+import prr.Journal;
 import prr.Network;
 import prr.clients.Client;
+import prr.clients.Money;
 import prr.clients.Notification;
 import prr.communications.Communication;
 import prr.communications.InteractiveCommunication;
@@ -30,23 +28,26 @@ import prr.exceptions.UnknownTerminalKeyException;
 /**
  * Abstract terminal.
  */
-public abstract class Terminal implements Serializable {
-
-    /** Serial number for serialization. */
-    private static final long serialVersionUID = 202208091753L;
+public abstract class Terminal {
 
     private String _key;
+    /** The numeric value of the key (keys are made of digits). */
+    private int _id;
     private Client _client;
     private TerminalState _state;
-    private double _payments = 0;
-    private double _debts = 0;
-    private Map<String, Terminal> _friends = new TreeMap<String, Terminal>();
-    private Map<Integer, Communication> _communications = new HashMap<Integer, Communication>();
+    /** The state to return to when the terminal is busy, or null. */
+    private TerminalState _previousState;
+    private long _payments = 0;
+    private long _debts = 0;
+    private FriendSet _friends = new FriendSet();
+    private CommunicationKeys _started = new CommunicationKeys();
+    private CommunicationKeys _received = new CommunicationKeys();
     private InteractiveCommunication _onGoingCommunication = null;
     private Set<Client> _contactAttempts = new HashSet<Client>();
 
     public Terminal(String key, Client client, String state) {
         _key = key;
+        _id = Integer.parseInt(key);
         _client = client;
         selectState(state);
     }
@@ -59,15 +60,27 @@ public abstract class Terminal implements Serializable {
         return _key;
     }
 
-    TerminalState getState() {
+    /**
+     * Gets the numeric value of the key of this terminal. Keys have the
+     * same length, so ids have the order of the keys.
+     */
+    public int getId() {
+        return _id;
+    }
+
+    public TerminalState getState() {
         return _state;
     }
 
-    public double getPayments() {
+    public TerminalState getPreviousState() {
+        return _previousState;
+    }
+
+    public long getPayments() {
         return _payments;
     }
 
-    public double getDebts() {
+    public long getDebts() {
         return _debts;
     }
 
@@ -75,28 +88,46 @@ public abstract class Terminal implements Serializable {
         _state = state;
     }
 
-    public Collection<Communication> getStartedCommunications() {
-        return _communications
-                .values()
-                .stream()
-                .filter(comm -> this.equals(comm.getSourceTerminal()))
-                .collect(Collectors.toList());
+    void becomeBusy(TerminalState previousState) {
+        _previousState = previousState;
+        _state = TerminalState.BUSY;
+    }
+
+    void endBusy() {
+        _state = _previousState != null ? _previousState : TerminalState.IDLE;
+        _previousState = null;
+    }
+
+    /**
+     * Gets the keys of the communications started by this terminal, in
+     * increasing order.
+     */
+    public int[] getStartedCommunicationKeys() {
+        return _started.toArray();
+    }
+
+    /**
+     * Gets the keys of the communications received by this terminal, in
+     * increasing order.
+     */
+    public int[] getReceivedCommunicationKeys() {
+        return _received.toArray();
+    }
+
+    public Collection<Terminal> getFriends() {
+        return _friends.terminals();
     }
 
-    public Collection<Communication> getReceivedCommunications() {
-        return _communications
-                .values()
-                .stream()
-                .filter(comm -> this.equals(comm.getDestinationTerminal()))
-                .collect(Collectors.toList());
+    public Collection<Client> getContactAttempts() {
+        return _contactAttempts;
     }
 
     public boolean isUnused() {
-        return _communications.size() == 0;
+        return _started.size() == 0 && _received.size() == 0;
     }
 
     public boolean isFriend(Terminal terminal) {
-        return _friends.get(terminal.getKey()) != null;
+        return _friends.contains(terminal);
     }
 
     public boolean hasPositiveBalance() {
@@ -105,10 +136,48 @@ public abstract class Terminal implements Serializable {
 
     public void selectState(String state) {
         switch (state) {
-            case "ON" -> _state = new IdleState(this);
-            case "OFF" -> _state = new OffState(this);
-            case "SILENCE" -> _state = new SilentState(this);
-            case "BUSY" -> _state = new BusyState(this, null);
+            case "ON" -> _state = TerminalState.IDLE;
+            case "OFF" -> _state = TerminalState.OFF;
+            case "SILENCE" -> _state = TerminalState.SILENCE;
+            case "BUSY" -> _state = TerminalState.BUSY;
+        }
+        _previousState = null;
+    }
+
+    public void restoreState(String state, String previousState) {
+        _state = TerminalState.valueOf(state);
+        _previousState = previousState == null ? null
+                         : TerminalState.valueOf(previousState);
+    }
+
+    public void restoreBalance(long payments, long debts) {
+        _payments = payments;
+        _debts = debts;
+    }
+
+    public void restoreFriend(Terminal friend) {
+        _friends.add(friend);
+    }
+
+    public void restoreCommunicationKeys(int[] started, int[] received) {
+        for (int key : started) {
+            _started.add(key);
+        }
+        for (int key : received) {
+            _received.add(key);
+        }
+    }
+
+    public void restoreCommunication(Communication communication) {
+        if (this.equals(communication.getSourceTerminal())) {
+            _started.add(communication.getKey());
+        }
+        if (this.equals(communication.getDestinationTerminal())) {
+            _received.add(communication.getKey());
+        }
+        if (communication.getInProgress() &&
+                communication instanceof InteractiveCommunication interactive) {
+            _onGoingCommunication = interactive;
         }
     }
 
@@ -134,27 +203,32 @@ public abstract class Terminal implements Serializable {
         return _state.canStartCommunication();
     }
 
-    public void turnOn() throws TerminalStateAlreadyOn {
-        _state.transitToIdle();
+    public void turnOn(Network network) throws TerminalStateAlreadyOn {
+        _state.transitToIdle(this);
+        network.recordChange(Journal.Operation.TURN_ON, _key);
     }
 
-    public void turnOff() throws TerminalStateAlreadyOff {
-        _state.transitToOff();
+    public void turnOff(Network network) throws TerminalStateAlreadyOff {
+        _state.transitToOff(this);
+        network.recordChange(Journal.Operation.TURN_OFF, _key);
     }
 
-    public void silence() throws TerminalStateAlreadySilent {
-        _state.transitToSilent();
+    public void silence(Network network) throws TerminalStateAlreadySilent {
+        _state.transitToSilent(this);
+        network.recordChange(Journal.Operation.SILENCE, _key);
     }
 
     public void addFriend(Network network, String friendKey)
             throws UnknownTerminalKeyException {
-        Terminal friend = network.getTerminal(friendKey);
+        Terminal friend = network.findTerminal(friendKey).orElse(null);
 
-        if (_key.equals(friendKey) || _friends.get(friendKey) != null) {
+        if (friend == null) {
+            throw new UnknownTerminalKeyException(friendKey);
+        }
+        if (friend == this || !_friends.add(friend)) {
             return;
         }
-        _friends.put(friendKey, friend);
-        network.setChanged(true);
+        network.recordChange(Journal.Operation.ADD_FRIEND, _key, friendKey);
     }
 
     public void removeFriend(Network network, String friendKey)
@@ -162,31 +236,30 @@ public abstract class Terminal implements Serializable {
         
         Terminal friend = network.getTerminal(friendKey);
 
-        if (_friends.get(friendKey) == null) {
+        if (!_friends.remove(friend)) {
             return;
         }
-        _friends.remove(friendKey);
-        network.setChanged(true);
+        network.recordChange(Journal.Operation.REMOVE_FRIEND, _key, friendKey);
     }
 
     public boolean canReceiveTextCommunication() throws DestinationTerminalIsOff {
-        return _state.canReceiveTextCommunication();
+        return _state.canReceiveTextCommunication(this);
     }
 
     public boolean canReceiveInteractiveCommunication()
             throws DestinationTerminalIsOff, DestinationTerminalIsBusy, DestinationTerminalIsSilent {
-        return _state.canReceiveInteractiveCommunication();
+        return _state.canReceiveInteractiveCommunication(this);
     }
 
     public void receiveTextCommunication(Communication communication) {
-        _communications.put(communication.getKey(), communication);
+        _received.add(communication.getKey());
     }
 
     public void receiveInteractiveCommunication(
             InteractiveCommunication communication) {
-        _communications.put(communication.getKey(), communication);
+        _received.add(communication.getKey());
         _onGoingCommunication = communication;
-        _state.transitToBusy();
+        _state.transitToBusy(this);
     }
 
     public InteractiveCommunication getOnGoingCommunication() throws NoOngoingCommunication {
@@ -203,24 +276,25 @@ public abstract class Terminal implements Serializable {
     }
 
     public void transitToPreviousState() {
-        _state.transitToPrevious();
+        _state.transitToPrevious(this);
     }
 
-    public double calculateTextCommCost(TextCommunication comm) {
+    public long calculateTextCommCost(TextCommunication comm) {
         return _client.calculateTextCommCost(comm);
     }
 
-    public double calculateVoiceCommCost(InteractiveCommunication comm) {
+    public long calculateVoiceCommCost(InteractiveCommunication comm) {
         return _client.calculateVoiceCommCost(comm);
     }
 
-    public double calculateVideoCommCost(InteractiveCommunication comm) {
+    public long calculateVideoCommCost(InteractiveCommunication comm) {
         return _client.calculateVideoCommCost(comm);
     }
 
     public void payCommunication(Network network, int key)
             throws InvalidCommunicationKey {
-        Communication communication = _communications.get(key);
+        Communication communication = _started.contains(key)
+                                      ? network.getCommunication(key) : null;
 
         if (communication == null ||
                 !this.equals(communication.getSourceTerminal()) ||
@@ -229,35 +303,91 @@ public abstract class Terminal implements Serializable {
             throw new InvalidCommunicationKey();
         }
 
-        double cost = communication.pay();
+        long cost = communication.pay();
+        network.keepCommunication(communication);
         _client.performPayment(cost);
         _payments += cost;
         _debts -= cost;
-        network.setChanged(true);
+        network.addPayment(this, cost);
+        network.recordChange(Journal.Operation.PAY, _key, String.valueOf(key));
+    }
+
+    /**
+     * Changes the cost of a finished communication started by this terminal
+     * which is not paid yet, charging or crediting the difference.
+     */
+    public void rerateCommunication(Network network, int key, long cost)
+            throws InvalidCommunicationKey {
+        Communication communication = _started.contains(key)
+                                      ? network.getCommunication(key) : null;
+
+        if (communication == null ||
+                !this.equals(communication.getSourceTerminal()) ||
+                communication.getInProgress() ||
+                communication.getPaid()) {
+            throw new InvalidCommunicationKey();
+        }
+
+        long difference = cost - communication.getCost();
+        communication.setCost(cost);
+        network.keepCommunication(communication);
+        _client.addDebts(difference);
+        _debts += difference;
+        network.addDebt(this, difference);
+        network.recordChange(Journal.Operation.RERATE, _key,
+                             String.valueOf(key), String.valueOf(cost));
     }
 
     public void sendTextCommunication(Network network, String destinationKey,
             String message) throws UnknownTerminalKeyException, DestinationTerminalIsOff {
-        Terminal destination = network.getTerminal(destinationKey);
+        sendTextCommunication(network, destinationKey, message,
+                              OptionalLong.empty());
+    }
+
+    /**
+     * Sends a text communication charged with a cost already known, when
+     * it is replayed from a journal, instead of rating it again.
+     */
+    public void sendTextCommunication(Network network, String destinationKey,
+            String message, long cost)
+            throws UnknownTerminalKeyException, DestinationTerminalIsOff {
+        sendTextCommunication(network, destinationKey, message,
+                              OptionalLong.of(cost));
+    }
+
+    private void sendTextCommunication(Network network, String destinationKey,
+            String message, OptionalLong charged)
+            throws UnknownTerminalKeyException, DestinationTerminalIsOff {
+        Terminal destination = network.findTerminal(destinationKey).orElse(null);
+
+        if (destination == null) {
+            throw new UnknownTerminalKeyException(destinationKey);
+        }
 
         try {
             destination.canReceiveTextCommunication();
         } catch (DestinationTerminalIsOff e) {
             if (_client.canReceiveNotifications()) {
                 destination.registerContactAttempt(_client);
-                network.setChanged(true);
+                network.recordChange(Journal.Operation.CONTACT_ATTEMPT,
+                                     destinationKey, _client.getKey());
             }
             throw e;
         }
 
         TextCommunication communication = network.registerTextCommunication(this, destination, message);
 
-        _communications.put(communication.getKey(), communication);
+        _started.add(communication.getKey());
         destination.receiveTextCommunication(communication);
-        double cost = calculateTextCommCost(communication);
+        communication.setRating(_client.getType(), communication.isFriend());
+        long cost = charged.isPresent()
+                    ? _client.chargeTextComm(charged.getAsLong())
+                    : calculateTextCommCost(communication);
         _debts += cost;
+        network.addDebt(this, cost);
         communication.endCommunication(cost);
-        network.setChanged(true);
+        network.recordChange(Journal.Operation.SEND_CHARGED_TEXT, _key,
+                             destinationKey, message, String.valueOf(cost));
     }
 
     public void startInteractiveCommunication(
@@ -266,7 +396,11 @@ public abstract class Terminal implements Serializable {
             String type)
             throws UnknownTerminalKeyException, CommunicationUnsupportedAtOrigin, CommunicationUnsupportedAtDestination,
             DestinationTerminalIsOff, DestinationTerminalIsBusy, DestinationTerminalIsSilent {
-        Terminal destination = network.getTerminal(destinationKey);
+        Terminal destination = network.findTerminal(destinationKey).orElse(null);
+
+        if (destination == null) {
+            throw new UnknownTerminalKeyException(destinationKey);
+        }
 
         if (!supportInteractiveCommunication(type)) {
             throw new CommunicationUnsupportedAtOrigin(_key, type);
@@ -285,23 +419,48 @@ public abstract class Terminal implements Serializable {
         } catch (DestinationTerminalIsOff | DestinationTerminalIsBusy | DestinationTerminalIsSilent e) {
             if (_client.canReceiveNotifications()) {
                 destination.registerContactAttempt(_client);
-                network.setChanged(true);
+                network.recordChange(Journal.Operation.CONTACT_ATTEMPT,
+                                     destinationKey, _client.getKey());
             }
             throw e;
         }
 
         InteractiveCommunication communication = network.registerInteractiveCommunication(this, destination, type);
-        _communications.put(communication.getKey(), communication);
+        _started.add(communication.getKey());
         _onGoingCommunication = communication;
-        _state.transitToBusy();
+        _state.transitToBusy(this);
         destination.receiveInteractiveCommunication(communication);
-        network.setChanged(true);
+        network.recordChange(Journal.Operation.START_INTERACTIVE, _key,
+                             destinationKey, type);
     }
 
-    public double endInteractiveCommunication(Network network, int duration) {
-        double cost = _onGoingCommunication.endInteractiveComm(duration);
+    public long endInteractiveCommunication(Network network, int duration) {
+        return endInteractiveCommunication(network, duration,
+                                           OptionalLong.empty());
+    }
+
+    /**
+     * Ends the ongoing communication charged with a cost already known,
+     * when it is replayed from a journal, instead of rating it again.
+     */
+    public long endInteractiveCommunication(Network network, int duration,
+                                            long cost) {
+        return endInteractiveCommunication(network, duration,
+                                           OptionalLong.of(cost));
+    }
+
+    private long endInteractiveCommunication(Network network, int duration,
+                                             OptionalLong charged) {
+        _onGoingCommunication.setRating(_client.getType(),
+                                        _onGoingCommunication.isFriend());
+        long cost = charged.isPresent()
+                    ? _onGoingCommunication.endInteractiveComm(duration,
+                                                               charged.getAsLong())
+                    : _onGoingCommunication.endInteractiveComm(duration);
         _debts += cost;
-        network.setChanged(true);
+        network.addDebt(this, cost);
+        network.recordChange(Journal.Operation.END_CHARGED_INTERACTIVE, _key,
+                             String.valueOf(duration), String.valueOf(cost));
         return cost;
     }
 
@@ -316,6 +475,17 @@ public abstract class Terminal implements Serializable {
 
     public abstract boolean supportInteractiveCommunication(String type);
 
+    private String friendKeys() {
+        StringBuilder keys = new StringBuilder();
+        for (Terminal friend : _friends.terminals()) {
+            if (keys.length() > 0) {
+                keys.append(',');
+            }
+            keys.append(friend.getKey());
+        }
+        return keys.toString();
+    }
+
     @Override
     public String toString() {
         return (String.format(
@@ -323,9 +493,9 @@ public abstract class Terminal implements Serializable {
                 _key,
                 _client.getKey(),
                 _state.toString(),
-                Math.round(_payments),
-                Math.round(_debts)) +
-                (_friends.size() > 0 ? "|" + String.join(",", _friends.keySet()) : ""));
+                Money.round(_payments),
+                Money.round(_debts)) +
+                (_friends.size() > 0 ? "|" + friendKeys() : ""));
     }
 
     @Override
@@ -1,6 +1,8 @@
 package prr.terminals;
 
-import java.io.Serializable;
+import prr.clients.OffToIdleNotification;
+import prr.clients.OffToSilentNotification;
+import prr.clients.SilentToIdleNotification;
 import prr.exceptions.TerminalStateAlreadyOn;
 import prr.exceptions.TerminalStateAlreadySilent;
 import prr.exceptions.TerminalStateAlreadyOff;
@@ -8,28 +10,191 @@ import prr.exceptions.DestinationTerminalIsOff;
 import prr.exceptions.DestinationTerminalIsBusy;
 import prr.exceptions.DestinationTerminalIsSilent;
 
-public abstract class TerminalState implements Serializable {
-    private Terminal _terminal;
+/**
+ * States of a terminal. States are shared by every terminal, which is
+ * given to the methods that need it; the state a busy terminal returns to
+ * is kept by the terminal (see Terminal.getPreviousState).
+ */
+public enum TerminalState {
+    IDLE {
+        @Override
+        public void transitToIdle(Terminal terminal)
+                throws TerminalStateAlreadyOn {
+            throw new TerminalStateAlreadyOn();
+        }
 
-    public TerminalState(Terminal terminal) {
-        _terminal = terminal;
+        @Override
+        public void transitToSilent(Terminal terminal) {
+            terminal.setState(SILENCE);
+        }
+
+        @Override
+        public void transitToBusy(Terminal terminal) {
+            terminal.becomeBusy(this);
+        }
+
+        @Override
+        public void transitToOff(Terminal terminal) {
+            terminal.setState(OFF);
+        }
+
+        @Override
+        public boolean canStartCommunication() {
+            return true;
+        }
+
+        @Override
+        public boolean canSendTextCommunication() {
+            return true;
+        }
+
+        @Override
+        public boolean canReceiveTextCommunication(Terminal terminal) {
+            return true;
+        }
+
+        @Override
+        public boolean canReceiveInteractiveCommunication(Terminal terminal) {
+            return true;
+        }
+    },
+
+    SILENCE {
+        @Override
+        public void transitToIdle(Terminal terminal) {
+            terminal.setState(IDLE);
+            terminal.deliverNotifications(
+                    new SilentToIdleNotification(terminal.getKey()));
+        }
+
+        @Override
+        public void transitToSilent(Terminal terminal)
+                throws TerminalStateAlreadySilent {
+            throw new TerminalStateAlreadySilent();
+        }
+
+        @Override
+        public void transitToBusy(Terminal terminal) {
+            terminal.becomeBusy(this);
+        }
+
+        @Override
+        public void transitToOff(Terminal terminal) {
+            terminal.setState(OFF);
+        }
+
+        @Override
+        public boolean canStartCommunication() {
+            return true;
+        }
+
+        @Override
+        public boolean canSendTextCommunication() {
+            return true;
+        }
+
+        @Override
+        public boolean canReceiveTextCommunication(Terminal terminal) {
+            return true;
+        }
+
+        @Override
+        public boolean canReceiveInteractiveCommunication(Terminal terminal)
+                throws DestinationTerminalIsSilent {
+            throw new DestinationTerminalIsSilent(terminal.getKey());
+        }
+    },
+
+    OFF {
+        @Override
+        public void transitToIdle(Terminal terminal) {
+            terminal.setState(IDLE);
+            terminal.deliverNotifications(
+                    new OffToIdleNotification(terminal.getKey()));
+        }
+
+        @Override
+        public void transitToSilent(Terminal terminal) {
+            terminal.setState(SILENCE);
+            terminal.deliverNotifications(
+                    new OffToSilentNotification(terminal.getKey()));
+        }
+
+        @Override
+        public void transitToOff(Terminal terminal)
+                throws TerminalStateAlreadyOff {
+            throw new TerminalStateAlreadyOff();
+        }
+
+        @Override
+        public boolean canReceiveTextCommunication(Terminal terminal)
+                throws DestinationTerminalIsOff {
+            throw new DestinationTerminalIsOff(terminal.getKey());
+        }
+
+        @Override
+        public boolean canReceiveInteractiveCommunication(Terminal terminal)
+                throws DestinationTerminalIsOff {
+            throw new DestinationTerminalIsOff(terminal.getKey());
+        }
+    },
+
+    BUSY {
+        @Override
+        public void transitToPrevious(Terminal terminal) {
+            terminal.endBusy();
+        }
+
+        @Override
+        public boolean canReceiveTextCommunication(Terminal terminal) {
+            return true;
+        }
+
+        @Override
+        public boolean canReceiveInteractiveCommunication(Terminal terminal)
+                throws DestinationTerminalIsBusy {
+            throw new DestinationTerminalIsBusy(terminal.getKey());
+        }
+    };
+
+    // by default, transitions leave the terminal as it is
+
+    public void transitToIdle(Terminal terminal)
+            throws TerminalStateAlreadyOn {
+        // EMPTY
+    }
+
+    public void transitToSilent(Terminal terminal)
+            throws TerminalStateAlreadySilent {
+        // EMPTY
     }
 
-    public Terminal getTerminal() {
-        return _terminal;
+    public void transitToBusy(Terminal terminal) {
+        // EMPTY
     }
 
-    public abstract void transitToIdle() throws TerminalStateAlreadyOn;
-    public abstract void transitToSilent() throws TerminalStateAlreadySilent;
-    public abstract void transitToBusy();
-    public abstract void transitToOff() throws TerminalStateAlreadyOff;
-    public abstract void transitToPrevious();
-    public abstract boolean canStartCommunication();
-    public abstract boolean canSendTextCommunication();
-    public abstract boolean canReceiveTextCommunication()
-                            throws DestinationTerminalIsOff;
-    public abstract boolean canReceiveInteractiveCommunication()
-                            throws DestinationTerminalIsOff,
-                                   DestinationTerminalIsBusy,
-                                   DestinationTerminalIsSilent;
+    public void transitToOff(Terminal terminal)
+            throws TerminalStateAlreadyOff {
+        // EMPTY
+    }
+
+    public void transitToPrevious(Terminal terminal) {
+        // EMPTY
+    }
+
+    public boolean canStartCommunication() {
+        return false;
+    }
+
+    public boolean canSendTextCommunication() {
+        return false;
+    }
+
+    public abstract boolean canReceiveTextCommunication(Terminal terminal)
+            throws DestinationTerminalIsOff;
+
+    public abstract boolean canReceiveInteractiveCommunication(
+            Terminal terminal)
+            throws DestinationTerminalIsOff, DestinationTerminalIsBusy,
+                   DestinationTerminalIsSilent;
 }
@@ -0,0 +1,115 @@
+package prr;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Checks of the behaviour tests, which are classes named *Test run by
+ * "make test", each with a main method which fails with an AssertionError
+ * (or any other exception) when something is wrong, and the fixtures
+ * they share.
+ */
+public final class Check {
+
+	private Check() {
+		// static methods only
+	}
+
+	/**
+	 * Fail unless a condition holds.
+	 *
+	 * @param condition the condition
+	 * @param what      what is checked
+	 */
+	public static void isTrue(boolean condition, String what) {
+		if (!condition) {
+			throw new AssertionError(what);
+		}
+	}
+
+	/**
+	 * Fail unless a value is the expected one.
+	 *
+	 * @param expected the expected value
+	 * @param actual   the value
+	 * @param what     what is checked
+	 */
+	public static void equal(Object expected, Object actual, String what) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			throw new AssertionError(what + ": expected <" + expected
+									 + "> but was <" + actual + ">");
+		}
+	}
+
+	/**
+	 * Fail unless an action throws an exception of a type.
+	 *
+	 * @param type   the type of the exception
+	 * @param action the action
+	 * @param what   what is checked
+	 */
+	public static void fails(Class<? extends Throwable> type, Action action,
+							 String what) {
+		try {
+			action.run();
+		} catch (Throwable e) {
+			if (type.isInstance(e)) {
+				return;
+			}
+			throw new AssertionError(what + ": threw " + e, e);
+		}
+		throw new AssertionError(what + ": did not throw "
+								 + type.getSimpleName());
+	}
+
+	/**
+	 * Register two clients, alice and bob, each with a FANCY terminal
+	 * which is on: 100001 of alice and 100002 of bob.
+	 *
+	 * @param network the network
+	 * @return the network
+	 */
+	public static Network twoClients(Network network) throws Exception {
+		network.registerClient("alice", "Alice", "1");
+		network.registerClient("bob", "Bob", "2");
+		network.registerTerminal("FANCY", "100001", "alice", "ON");
+		network.registerTerminal("FANCY", "100002", "bob", "ON");
+		return network;
+	}
+
+	/**
+	 * Run an action in a new temporary directory, which is deleted with
+	 * the files left in it afterwards.
+	 *
+	 * @param action the action, given the directory
+	 */
+	public static void inTempDirectory(InDirectory action) throws Exception {
+		Path directory = Files.createTempDirectory("prr");
+		try {
+			action.run(directory);
+		} finally {
+			try (var files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Action which may throw any exception.
+	 */
+	@FunctionalInterface
+	public interface Action {
+		void run() throws Exception;
+	}
+
+	/**
+	 * Action in a directory, which may throw any exception.
+	 */
+	@FunctionalInterface
+	public interface InDirectory {
+		void run(Path directory) throws Exception;
+	}
+}
@@ -0,0 +1,57 @@
+package prr;
+
+import prr.communications.Communication;
+import prr.terminals.Terminal;
+
+/**
+ * Changes to communications read from the segments of a snapshot, with a
+ * cache of a single segment.
+ */
+public class CommunicationStoreTest {
+
+	public static void main(String[] args) throws Exception {
+		// read when CommunicationStore is initialized
+		System.setProperty("communications.cache", "1");
+
+		Check.inTempDirectory(directory -> keptAfterEviction(
+				directory.resolve("network.dat").toString()));
+	}
+
+	/**
+	 * A communication changed through a view whose segment has been
+	 * evicted keeps its change, even when the segment was read again and
+	 * changed through another view.
+	 */
+	private static void keptAfterEviction(String filename) throws Exception {
+		NetworkManager manager = new NetworkManager();
+		Network network = Check.twoClients(manager.getNetwork());
+		Terminal terminal = network.getTerminal("100001");
+		for (int i = 0; i < 3 * CommunicationStore.SEGMENT_SIZE; i++) {
+			terminal.sendTextCommunication(network, "100002", "text " + i);
+		}
+		manager.saveAs(filename);
+		manager.awaitSaved();
+
+		manager = new NetworkManager();
+		manager.load(filename);
+		network = manager.getNetwork();
+
+		Communication first = network.getCommunication(1);
+		Communication second = network.getCommunication(2);
+		// reading another segment evicts the one of the first two
+		network.getCommunication(2 * CommunicationStore.SEGMENT_SIZE);
+
+		first.setPaid(true);
+		network.keepCommunication(first);
+		Check.isTrue(network.getCommunication(1).getPaid(),
+					 "change kept after its segment was evicted");
+
+		network.getCommunication(2 * CommunicationStore.SEGMENT_SIZE);
+		second.setPaid(true);
+		network.keepCommunication(second);
+		Check.isTrue(network.getCommunication(2).getPaid(),
+					 "change copied to the segment already kept");
+		Check.isTrue(network.getCommunication(1).getPaid(),
+					 "earlier change still kept");
+	}
+}
@@ -0,0 +1,150 @@
+package prr;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import prr.terminals.Terminal;
+
+/**
+ * Replaying journals on top of their snapshots, and rotating them once
+ * they are compacted.
+ */
+public class JournalTest {
+
+	public static void main(String[] args) throws Exception {
+		Check.inTempDirectory(directory -> {
+			String filename = directory.resolve("network.dat").toString();
+			replay(filename);
+			tornRecord(filename);
+			rotation(filename);
+		});
+	}
+
+	/**
+	 * @return the network saved in a file, with its journal replayed
+	 */
+	private static Network load(String filename) throws Exception {
+		NetworkManager manager = new NetworkManager();
+		manager.load(filename);
+		return manager.getNetwork();
+	}
+
+	/**
+	 * Saving appends the operations to the journal, which are replayed
+	 * when the network is loaded.
+	 */
+	private static void replay(String filename) throws Exception {
+		NetworkManager manager = new NetworkManager();
+		Network network = Check.twoClients(manager.getNetwork());
+		manager.saveAs(filename);
+		manager.awaitSaved();
+		long snapshotSize = Files.size(Path.of(filename));
+
+		network.registerClient("carol", "Carol", "3");
+		network.registerTerminal("BASIC", "100003", "carol", "OFF");
+		Terminal alice = network.getTerminal("100001");
+		Terminal bob = network.getTerminal("100002");
+		alice.addFriend(network, "100002");
+		alice.addFriend(network, "100003");
+		alice.removeFriend(network, "100003");
+		alice.sendTextCommunication(network, "100002", "hello");
+		Check.fails(Exception.class, () -> alice.sendTextCommunication(
+				network, "100003", "missed"), "text to a terminal off");
+		alice.startInteractiveCommunication(network, "100002", "VIDEO");
+		alice.endInteractiveCommunication(network, 4);
+		alice.payCommunication(network, 1);
+		bob.silence(network);
+		network.getTerminal("100003").turnOn(network);
+		network.disableClientNotifications("bob");
+		bob.startInteractiveCommunication(network, "100001", "VOICE");
+		manager.save();
+		manager.awaitSaved();
+
+		Check.equal(snapshotSize, Files.size(Path.of(filename)),
+					"size of the snapshot after saving with a journal");
+		Check.equal(SnapshotCodecTest.dump(network),
+					SnapshotCodecTest.dump(load(filename)),
+					"network replayed");
+	}
+
+	/**
+	 * A record which was not completely written is discarded, and the
+	 * next save appends after the records before it.
+	 */
+	private static void tornRecord(String filename) throws Exception {
+		Path journal = Journal.pathOf(filename);
+		Files.write(journal, new byte[] { 0, 0, 0, 50, 1, 2, 3 },
+					StandardOpenOption.APPEND);
+
+		NetworkManager manager = new NetworkManager();
+		manager.load(filename);
+		Network network = manager.getNetwork();
+		String loaded = SnapshotCodecTest.dump(network);
+		Check.equal(loaded, SnapshotCodecTest.dump(load(filename)),
+					"network with a torn record");
+
+		network.getTerminal("100002").sendTextCommunication(network,
+				"100003", "after");
+		manager.save();
+		manager.awaitSaved();
+		Check.equal(SnapshotCodecTest.dump(network),
+					SnapshotCodecTest.dump(load(filename)),
+					"network saved after a torn record");
+	}
+
+	/**
+	 * A journal larger than its snapshot is compacted into it, and then
+	 * rotated: the new journal continues the old one from the compacted
+	 * offset.
+	 */
+	private static void rotation(String filename) throws Exception {
+		NetworkManager manager = new NetworkManager();
+		manager.load(filename);
+		Network network = manager.getNetwork();
+		Terminal alice = network.getTerminal("100001");
+		long journalId = header(filename)[0];
+
+		// well past the 1 MiB from which journals are compacted
+		for (int i = 0; i < 40000; i++) {
+			alice.sendTextCommunication(network, "100002", "text " + i);
+		}
+		manager.save();
+		manager.awaitSaved();
+		Check.isTrue(Files.size(Journal.pathOf(filename)) > 1 << 20,
+					 "size of the journal before its compaction");
+
+		// the journal is rotated by the first save after the compaction
+		long[] header = header(filename);
+		for (int i = 0; header[0] == journalId && i < 600; i++) {
+			Thread.sleep(100);
+			alice.sendTextCommunication(network, "100002", "more " + i);
+			manager.save();
+			manager.awaitSaved();
+			header = header(filename);
+		}
+		Check.isTrue(header[0] != journalId, "journal rotated");
+		Check.equal(journalId, header[1], "journal continued by the new one");
+		Check.isTrue(Files.size(Journal.pathOf(filename)) < 1 << 20,
+					 "size of the journal after its rotation");
+
+		alice.sendTextCommunication(network, "100002", "after rotation");
+		manager.save();
+		manager.awaitSaved();
+		Check.equal(SnapshotCodecTest.dump(network),
+					SnapshotCodecTest.dump(load(filename)),
+					"network after the rotation");
+	}
+
+	/**
+	 * @return the id of the journal of a snapshot file and the id of the
+	 *         journal it continues
+	 */
+	private static long[] header(String filename) throws Exception {
+		try (FileChannel channel = FileChannel.open(Journal.pathOf(filename),
+				StandardOpenOption.READ)) {
+			return Journal.readHeader(channel);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package prr;
+
+import java.nio.file.Path;
+
+import prr.terminals.Terminal;
+
+/**
+ * Saving and loading networks.
+ */
+public class NetworkManagerTest {
+
+	public static void main(String[] args) throws Exception {
+		Check.inTempDirectory(NetworkManagerTest::savedAsTheyWereWhenSaving);
+	}
+
+	/**
+	 * @return a network of two clients, with texts from the terminal of
+	 *         the first one to the terminal of the second one
+	 */
+	private static NetworkManager network(int texts) throws Exception {
+		NetworkManager manager = new NetworkManager();
+		Network network = Check.twoClients(manager.getNetwork());
+		Terminal terminal = network.getTerminal("100001");
+		for (int i = 0; i < texts; i++) {
+			terminal.sendTextCommunication(network, "100002", "text " + i);
+		}
+		return manager;
+	}
+
+	/**
+	 * A snapshot is written in the background as the network was when it
+	 * was saved, although the network has changed since.
+	 */
+	private static void savedAsTheyWereWhenSaving(Path directory)
+			throws Exception {
+		String first = directory.resolve("first.dat").toString();
+		String second = directory.resolve("second.dat").toString();
+		int texts = 3 * CommunicationStore.SEGMENT_SIZE;
+
+		NetworkManager manager = network(texts);
+		manager.saveAs(first);
+		manager.awaitSaved();
+		manager = new NetworkManager();
+		manager.load(first);
+
+		Network network = manager.getNetwork();
+		Terminal terminal = network.getTerminal("100001");
+		terminal.payCommunication(network, 5);
+		manager.saveAs(second);
+		// changed while the snapshot may still be written
+		terminal.payCommunication(network, 2000);
+		terminal.sendTextCommunication(network, "100002", "after");
+		manager.awaitSaved();
+
+		NetworkManager saved = new NetworkManager();
+		saved.load(second);
+		network = saved.getNetwork();
+		Check.isTrue(network.getCommunication(5).getPaid(),
+					 "paid before saving");
+		Check.isTrue(!network.getCommunication(2000).getPaid(),
+					 "paid after saving");
+		Check.equal(null, network.getCommunication(texts + 1),
+					"communication sent after saving");
+		Check.equal(texts, network.getAllCommunications().size(),
+					"communications saved");
+	}
+}
@@ -0,0 +1,169 @@
+package prr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import prr.clients.Client;
+import prr.communications.Communication;
+import prr.terminals.Terminal;
+
+/**
+ * Snapshots of every version of the format, and the offsets written in
+ * the index of their segments.
+ */
+public class SnapshotCodecTest {
+
+	/**
+	 * Snapshots of network() written by the version of the codec which
+	 * introduced each format (test/prr/snapshots/v1.dat to v5.dat).
+	 */
+	private static final Path SNAPSHOTS = Path.of("test", "prr", "snapshots");
+
+	public static void main(String[] args) throws Exception {
+		segmentOffsets();
+		countsPastIntRange();
+		olderVersions();
+	}
+
+	/**
+	 * @return a network with notifications, friends, paid communications,
+	 *         a communication in progress, and two segments of complete
+	 *         communications
+	 */
+	private static Network network() throws Exception {
+		Network network = Check.twoClients(new Network());
+		network.registerClient("carol", "Carol", "3");
+		network.registerTerminal("BASIC", "100003", "carol", "ON");
+		Terminal alice = network.getTerminal("100001");
+		Terminal bob = network.getTerminal("100002");
+		Terminal carol = network.getTerminal("100003");
+		alice.addFriend(network, "100002");
+		for (int i = 0; i < 1100; i++) {
+			if (i % 3 == 2) {
+				bob.sendTextCommunication(network, "100003", "reply " + i);
+			} else {
+				alice.sendTextCommunication(network, "100002",
+						"x".repeat(i % 100 == 0 ? 120 : i % 60));
+			}
+		}
+		alice.startInteractiveCommunication(network, "100002", "VOICE");
+		alice.endInteractiveCommunication(network, 7);
+		alice.startInteractiveCommunication(network, "100002", "VIDEO");
+		alice.endInteractiveCommunication(network, 3);
+		bob.startInteractiveCommunication(network, "100003", "VOICE");
+		bob.endInteractiveCommunication(network, 5);
+		alice.payCommunication(network, 1);
+		alice.payCommunication(network, 4);
+		carol.turnOff(network);
+		Check.fails(Exception.class, () -> alice.sendTextCommunication(
+				network, "100003", "missed"), "text to a terminal off");
+		carol.turnOn(network);
+		bob.startInteractiveCommunication(network, "100001", "VIDEO");
+		return network;
+	}
+
+	/**
+	 * @return the state of a network, as text
+	 */
+	static String dump(Network network) {
+		StringBuilder dump = new StringBuilder();
+		for (Client client : network.getAllClients()) {
+			dump.append(client).append(' ').append(client.getNotifications())
+				.append(' ').append(client.getTextCommStreak()).append(' ')
+				.append(client.getVideoCommStreak()).append('\n');
+		}
+		for (Terminal terminal : network.getAllTerminals()) {
+			dump.append(terminal).append(' ')
+				.append(terminal.getPreviousState()).append(' ')
+				.append(terminal.getContactAttempts().size()).append('\n');
+		}
+		for (Communication communication : network.getAllCommunications()) {
+			dump.append(communication).append(' ')
+				.append(communication.getPaid()).append('\n');
+		}
+		return dump.toString();
+	}
+
+	/**
+	 * Snapshots of every older version load as the network they were
+	 * written from.
+	 */
+	private static void olderVersions() throws Exception {
+		String expected = dump(network());
+		for (int version = 1; version < SnapshotCodec.VERSION; version++) {
+			NetworkManager manager = new NetworkManager();
+			manager.load(SNAPSHOTS.resolve("v" + version + ".dat").toString());
+			Check.equal(expected, dump(manager.getNetwork()),
+						"network of version " + version);
+		}
+	}
+
+	/**
+	 * Every segment of the index starts where its first communication was
+	 * written and ends where the next one (or the index) starts.
+	 */
+	private static void segmentOffsets() throws Exception {
+		Network network = Check.twoClients(new Network());
+		Terminal terminal = network.getTerminal("100001");
+		int texts = 3 * CommunicationStore.SEGMENT_SIZE + 100;
+		for (int i = 0; i < texts; i++) {
+			terminal.sendTextCommunication(network, "100002", "text " + i);
+		}
+		terminal.startInteractiveCommunication(network, "100002", "VOICE");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		SnapshotCodec.write(network, new SnapshotCodec.Header(0, 0), bytes);
+		ByteBuffer snapshot = ByteBuffer.wrap(bytes.toByteArray());
+
+		int size = snapshot.capacity();
+		long indexOffset = snapshot.getLong(size - Long.BYTES);
+		int segments = snapshot.getInt((int) indexOffset);
+		Check.equal(4, segments, "segments");
+		Check.equal((long) size, indexOffset + Integer.BYTES
+					+ segments * (3 * Integer.BYTES + Long.BYTES) + Long.BYTES,
+					"size of the index");
+
+		int position = (int) indexOffset + Integer.BYTES;
+		long end = -1;
+		for (int i = 0; i < segments; i++) {
+			int firstKey = snapshot.getInt(position);
+			int count = snapshot.getInt(position + 4);
+			long offset = snapshot.getLong(position + 8);
+			int length = snapshot.getInt(position + 16);
+			position += 20;
+
+			Check.equal(1 + i * CommunicationStore.SEGMENT_SIZE, firstKey,
+						"first key of segment " + i);
+			Check.equal(i < segments - 1 ? CommunicationStore.SEGMENT_SIZE
+						: 100, count, "size of segment " + i);
+			Check.isTrue(end < 0 || offset == end,
+						 "segment " + i + " starts where the last one ends");
+			// a communication starts with its type and then its key
+			Check.equal(firstKey, snapshot.getInt((int) offset + 1),
+						"key at the offset of segment " + i);
+			end = offset + length;
+		}
+		Check.equal(indexOffset, end, "end of the last segment");
+	}
+
+	/**
+	 * Offsets go on past 2 GiB, where DataOutputStream.size() stops.
+	 */
+	private static void countsPastIntRange() throws Exception {
+		SnapshotCodec.CountingOutputStream counter =
+				new SnapshotCodec.CountingOutputStream(
+						OutputStream.nullOutputStream());
+		DataOutputStream out = new DataOutputStream(counter);
+		byte[] chunk = new byte[1 << 20];
+		for (int i = 0; i < 3 << 10; i++) {
+			out.write(chunk);
+		}
+		out.writeInt(1);
+		out.writeByte(1);
+		Check.equal((3L << 30) + 5, counter.getCount(), "bytes counted");
+		Check.equal(Integer.MAX_VALUE, out.size(), "size of the data stream");
+	}
+}
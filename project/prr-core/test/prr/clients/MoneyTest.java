@@ -0,0 +1,26 @@
+package prr.clients;
+
+import prr.Check;
+
+/**
+ * Amounts read from text.
+ */
+public class MoneyTest {
+
+    public static void main(String[] args) {
+        Check.equal(750L, Money.parse("7.5"), "decimals");
+        Check.equal(10L, Money.parse("0.10"), "hundredths");
+        Check.equal(-1200L, Money.parse("-12"), "negative units");
+        Check.equal(Long.MAX_VALUE, Money.parse("92233720368547758.07"),
+                    "largest amount");
+
+        Check.fails(NumberFormatException.class, () -> Money.parse("0.001"),
+                    "more than two decimals");
+        Check.fails(NumberFormatException.class,
+                    () -> Money.parse("92233720368547758.08"), "out of range");
+        Check.fails(NumberFormatException.class, () -> Money.parse("1e30"),
+                    "out of range");
+        Check.fails(NumberFormatException.class, () -> Money.parse("abc"),
+                    "not a number");
+    }
+}
@@ -0,0 +1,117 @@
+package prr.clients;
+
+import java.io.StringReader;
+
+import prr.Check;
+import prr.Network;
+import prr.NetworkManager;
+import prr.terminals.Terminal;
+
+/**
+ * Costs charged with the tariffs in use, and kept when they change.
+ */
+public class TariffsTest {
+
+    public static void main(String[] args) throws Exception {
+        try {
+            textTiers();
+            friendRounding();
+            replayedCosts();
+        } finally {
+            Tariffs.load();
+        }
+    }
+
+    /**
+     * @return the cost of a text, which is charged to its client
+     */
+    private static long sendText(Network network, int characters)
+            throws Exception {
+        Client client = network.getClient("alice");
+        long debts = client.getDebts();
+        network.getTerminal("100001").sendTextCommunication(network,
+                "100002", "x".repeat(characters));
+        return client.getDebts() - debts;
+    }
+
+    /**
+     * A NORMAL client pays 10 below 50 characters, 16 below 100 and 2 per
+     * character from then on.
+     */
+    private static void textTiers() throws Exception {
+        Tariffs.use(Tariffs.read(new StringReader("")));
+        Network network = Check.twoClients(new Network());
+        Check.equal(Money.of(10), sendText(network, 0), "empty text");
+        Check.equal(Money.of(10), sendText(network, 49), "49 characters");
+        Check.equal(Money.of(16), sendText(network, 50), "50 characters");
+        Check.equal(Money.of(16), sendText(network, 99), "99 characters");
+        Check.equal(Money.of(200), sendText(network, 100), "100 characters");
+        Check.equal(Money.of(202), sendText(network, 101), "101 characters");
+        Check.equal(Money.of(10 + 10 + 16 + 16 + 200 + 202),
+                    network.getClient("alice").getDebts(),
+                    "debts of the client");
+    }
+
+    /**
+     * The part of a communication to a friend which is charged is
+     * rounded half up to hundredths.
+     */
+    private static void friendRounding() throws Exception {
+        Tariffs.use(Tariffs.read(new StringReader("NORMAL.voice = 0.05")));
+        Network network = Check.twoClients(new Network());
+        Terminal terminal = network.getTerminal("100001");
+        terminal.addFriend(network, "100002");
+        long[] expected = { 3, 5, 8 };
+        for (int duration = 1; duration <= 3; duration++) {
+            terminal.startInteractiveCommunication(network, "100002",
+                                                   "VOICE");
+            terminal.endInteractiveCommunication(network, duration);
+            Check.equal(expected[duration - 1],
+                        network.getCommunication(duration).getCost(),
+                        "cost of " + duration + " units to a friend");
+        }
+
+        terminal.removeFriend(network, "100002");
+        terminal.startInteractiveCommunication(network, "100002", "VOICE");
+        terminal.endInteractiveCommunication(network, 3);
+        Check.equal(15L, network.getCommunication(4).getCost(),
+                    "cost of 3 units to a stranger");
+    }
+
+    /**
+     * Journaled communications are replayed with the costs they were
+     * charged, whichever tariffs are in use when they are loaded.
+     */
+    private static void replayedCosts() throws Exception {
+        Tariffs.use(Tariffs.read(new StringReader("")));
+        Check.inTempDirectory(directory -> {
+            String filename = directory.resolve("network.dat").toString();
+            NetworkManager manager = new NetworkManager();
+            Network network = Check.twoClients(manager.getNetwork());
+            manager.saveAs(filename);
+            manager.awaitSaved();
+
+            Terminal terminal = network.getTerminal("100001");
+            terminal.sendTextCommunication(network, "100002", "x".repeat(100));
+            terminal.startInteractiveCommunication(network, "100002", "VIDEO");
+            terminal.endInteractiveCommunication(network, 3);
+            manager.save();
+            manager.awaitSaved();
+
+            Tariffs.use(Tariffs.read(new StringReader("""
+                    NORMAL.text.fixed = 1, 1, 1
+                    NORMAL.text.perCharacter = 0, 0, 0
+                    NORMAL.video = 1
+                    """)));
+            NetworkManager loaded = new NetworkManager();
+            loaded.load(filename);
+            Network replayed = loaded.getNetwork();
+            Check.equal(Money.of(200), replayed.getCommunication(1).getCost(),
+                        "cost of the text replayed");
+            Check.equal(Money.of(90), replayed.getCommunication(2).getCost(),
+                        "cost of the video replayed");
+            Check.equal(Money.of(290), replayed.getClient("alice").getDebts(),
+                        "debts of the client replayed");
+        });
+    }
+}
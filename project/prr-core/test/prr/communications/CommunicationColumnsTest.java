@@ -0,0 +1,61 @@
+package prr.communications;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import prr.Check;
+import prr.terminals.BasicTerminal;
+import prr.terminals.Terminal;
+
+/**
+ * Messages kept in the chunks of a table of communications.
+ */
+public class CommunicationColumnsTest {
+
+    public static void main(String[] args) throws Exception {
+        messagesAcrossChunks();
+        notSerializable();
+    }
+
+    /**
+     * Messages of every length, including empty ones and ones longer than
+     * a chunk, are read back as they were added.
+     */
+    private static void messagesAcrossChunks() {
+        Terminal terminal = new BasicTerminal("100001", null, "ON");
+        CommunicationColumns columns = new CommunicationColumns(
+                new CommunicationColumns.Terminals(), 16);
+        List<String> messages = new ArrayList<String>();
+        StringBuilder message = new StringBuilder();
+        for (int key = 1; key <= 3000; key++) {
+            if (key % 7 == 0) {
+                columns.add(CommunicationColumns.VOICE, key, terminal,
+                            terminal, false, false, 10, 1, null);
+                messages.add("");
+                continue;
+            }
+            message.setLength(0);
+            int length = key % 500 == 0 ? 100000 : key % 11 == 0 ? 0 : key;
+            for (int i = 0; i < length; i++) {
+                message.append((char) ('a' + (key + i) % 26));
+            }
+            columns.add(CommunicationColumns.TEXT, key, terminal, terminal,
+                        false, false, 10, 0, message.toString());
+            messages.add(message.toString());
+        }
+
+        for (int row = 0; row < messages.size(); row++) {
+            Check.equal(row + 1, columns.getKey(row), "key of row " + row);
+            if (columns.get(row) instanceof TextCommunication) {
+                Check.equal(messages.get(row), columns.getMessage(row),
+                            "message of row " + row);
+            }
+        }
+    }
+
+    private static void notSerializable() {
+        Check.isTrue(!Serializable.class.isAssignableFrom(Communication.class),
+                     "communications are views and cannot be serialized");
+    }
+}
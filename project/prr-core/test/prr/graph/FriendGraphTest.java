@@ -0,0 +1,169 @@
+package prr.graph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import prr.Check;
+import prr.Network;
+import prr.communications.Communication;
+import prr.terminals.Terminal;
+
+/**
+ * Analytics of friend graphs, on a small graph worked out by hand and on
+ * a larger one checked against the friends of its terminals.
+ */
+public class FriendGraphTest {
+
+    public static void main(String[] args) throws Exception {
+        // graphs of 100 terminals or more are analyzed in parallel
+        System.setProperty("graph.parallel", "100");
+        small();
+        large();
+    }
+
+    private static String key(int terminal) {
+        return String.format("1%05d", terminal);
+    }
+
+    private static Network network(int terminals) throws Exception {
+        Network network = new Network();
+        network.registerClient("alice", "Alice", "1");
+        for (int t = 1; t <= terminals; t++) {
+            network.registerTerminal("FANCY", key(t), "alice", "ON");
+        }
+        return network;
+    }
+
+    private static List<String> keys(List<Terminal> terminals) {
+        return terminals.stream().map(Terminal::getKey)
+                        .collect(Collectors.toList());
+    }
+
+    /**
+     * Terminals 1, 2 and 3 are friends in a cycle, 1 and 4 are friends of
+     * each other, 5 is a friend of 6 and 7 has no friends.
+     */
+    private static void small() throws Exception {
+        Network network = network(7);
+        int[][] friends = { { 1, 2 }, { 2, 3 }, { 3, 1 }, { 1, 4 }, { 4, 1 },
+                            { 5, 6 } };
+        for (int[] pair : friends) {
+            network.getTerminal(key(pair[0])).addFriend(network, key(pair[1]));
+        }
+        Terminal[] terminals = new Terminal[8];
+        for (int t = 1; t <= 7; t++) {
+            terminals[t] = network.getTerminal(key(t));
+        }
+
+        FriendGraph graph = FriendGraph.of(network);
+        Check.equal(7, graph.size(), "vertices");
+        Check.equal(6, graph.edges(), "edges");
+        Check.equal(0, graph.vertexOf(terminals[1]), "vertex of 1");
+        Check.equal(terminals[7], graph.getTerminal(6), "terminal of 6");
+        Check.equal(2, graph.degree(0), "friends of 1");
+        Check.equal(2, graph.inDegree(0), "terminals with 1 as a friend");
+        Check.equal(0, graph.inDegree(6), "terminals with 7 as a friend");
+        Check.equal("[2, 4, 1]",
+                    Arrays.toString(graph.degreeDistribution()),
+                    "degree distribution");
+        Check.equal(List.of(key(1), key(2), key(3)),
+                    keys(graph.topDegree(3)), "most friends");
+
+        Check.equal("[0, 0, 0, 0, 4, 4, 6]",
+                    Arrays.toString(graph.components()), "components");
+        Check.equal(3, graph.countComponents(), "number of components");
+        Check.equal(1L, graph.triangles(), "triangles");
+
+        Check.equal(List.of(key(1)),
+                    keys(graph.mutualFriends(terminals[3], terminals[4])),
+                    "mutual friends of 3 and 4");
+        Check.equal(List.of(),
+                    keys(graph.mutualFriends(terminals[2], terminals[4])),
+                    "mutual friends of 2 and 4");
+
+        // 1 to 3 through 2; 2 is a friend of 1, and 7 of no one's friend
+        terminals[1].sendTextCommunication(network, key(3), "hello");
+        terminals[1].sendTextCommunication(network, key(2), "hello");
+        terminals[5].sendTextCommunication(network, key(7), "hello");
+        Check.equal(List.of(1),
+                    graph.friendsOfFriendsInContact(network).stream()
+                         .map(Communication::getKey)
+                         .collect(Collectors.toList()),
+                    "communications to friends of friends");
+
+        terminals[7].addFriend(network, key(5));
+        Check.equal(3, graph.countComponents(), "components of the snapshot");
+        Check.equal(2, FriendGraph.of(network).countComponents(),
+                    "components of a new graph");
+    }
+
+    /**
+     * A random graph, large enough to be analyzed in parallel.
+     */
+    private static void large() throws Exception {
+        int size = 400;
+        Network network = network(size);
+        Random random = new Random(22);
+        boolean[][] neighbours = new boolean[size][size];
+        for (int n = 0; n < 600; n++) {
+            int a = random.nextInt(size);
+            int b = random.nextInt(size);
+            if (a != b) {
+                network.getTerminal(key(a + 1)).addFriend(network, key(b + 1));
+                neighbours[a][b] = true;
+                neighbours[b][a] = true;
+            }
+        }
+        FriendGraph graph = FriendGraph.of(network);
+
+        int[] components = new int[size];
+        Arrays.fill(components, -1);
+        for (int v = 0; v < size; v++) {
+            if (components[v] < 0) {
+                Deque<Integer> pending = new ArrayDeque<Integer>(List.of(v));
+                components[v] = v;
+                while (!pending.isEmpty()) {
+                    int u = pending.pop();
+                    for (int w = 0; w < size; w++) {
+                        if (neighbours[u][w] && components[w] < 0) {
+                            components[w] = v;
+                            pending.push(w);
+                        }
+                    }
+                }
+            }
+        }
+        Check.equal(Arrays.toString(components),
+                    Arrays.toString(graph.components()), "components");
+
+        long triangles = 0;
+        for (int a = 0; a < size; a++) {
+            for (int b = a + 1; b < size; b++) {
+                if (neighbours[a][b]) {
+                    for (int c = b + 1; c < size; c++) {
+                        if (neighbours[a][c] && neighbours[b][c]) {
+                            triangles++;
+                        }
+                    }
+                }
+            }
+        }
+        Check.isTrue(triangles > 0, "triangles of the random graph");
+        Check.equal(triangles, graph.triangles(), "triangles");
+
+        for (int n = 0; n < 200; n++) {
+            Terminal first = graph.getTerminal(random.nextInt(size));
+            Terminal second = graph.getTerminal(random.nextInt(size));
+            List<Terminal> mutual = first.getFriends().stream()
+                    .filter(second::isFriend).collect(Collectors.toList());
+            Check.equal(keys(mutual),
+                        keys(graph.mutualFriends(first, second)),
+                        "mutual friends of " + first.getKey() + " and "
+                        + second.getKey());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package prr.query;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import prr.Check;
+import prr.Network;
+import prr.clients.Client;
+import prr.communications.Communication;
+import prr.terminals.Terminal;
+
+/**
+ * Indexes, orders and parallel runs of queries.
+ */
+public class QueryTest {
+
+    public static void main(String[] args) throws Exception {
+        // queries over more than 100 elements run in parallel
+        System.setProperty("query.parallel", "100");
+        Network network = network();
+        indexChoice(network);
+        ordering(network);
+        parallel(network);
+    }
+
+    /**
+     * Ten clients with debts, and one without, whose terminals sent
+     * 2000 texts and some voice communications to each other.
+     */
+    private static Network network() throws Exception {
+        Network network = new Network();
+        for (int i = 0; i < 10; i++) {
+            network.registerClient("client" + i, "Client " + i, "" + (i + 1));
+            network.registerTerminal("FANCY", "10000" + i, "client" + i,
+                                     "ON");
+        }
+        network.registerClient("idle", "Idle", "11");
+        for (int n = 0; n < 2000; n++) {
+            int source = n % 10;
+            int destination = (n * 7 + 3) % 10;
+            if (destination == source) {
+                destination = (destination + 1) % 10;
+            }
+            Terminal terminal = network.getTerminal("10000" + source);
+            if (n % 50 == 0) {
+                terminal.startInteractiveCommunication(network,
+                        "10000" + destination, "VOICE");
+                terminal.endInteractiveCommunication(network, n % 17);
+            } else {
+                terminal.sendTextCommunication(network, "10000" + destination,
+                                               "x".repeat(n % 120));
+            }
+        }
+        return network;
+    }
+
+    /**
+     * @return the elements which satisfy a condition in an order, as a
+     *         sequential query would give them
+     */
+    private static <T> List<T> expected(Collection<T> elements,
+                                        Predicate<? super T> predicate,
+                                        Comparator<? super T> order,
+                                        int limit) {
+        return elements.stream().filter(predicate).sorted(order).limit(limit)
+                       .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the keys of communications, which are compared by them
+     *         (each lookup gives a new view of a communication)
+     */
+    private static List<Integer> keys(List<Communication> communications) {
+        return communications.stream().map(Communication::getKey)
+                             .collect(Collectors.toList());
+    }
+
+    /**
+     * Only the elements of the smallest index are tested.
+     */
+    private static void indexChoice(Network network) throws Exception {
+        Client client = network.getClient("client3");
+        Criterion<Communication> all = new Criterion<Communication>(
+                communication -> true, Network::getAllCommunications, null);
+        AtomicInteger tested = new AtomicInteger();
+        List<Communication> result = Query.communications(network)
+                .where(all)
+                .where(CommunicationCriteria.fromClient(client))
+                .where(communication -> tested.incrementAndGet() > 0)
+                .list();
+
+        int size = network.getCommunicationsFromClient("client3").size();
+        Check.equal(200, size, "communications of the client");
+        Check.equal(size, tested.get(), "communications tested");
+        Check.equal(keys(expected(network.getAllCommunications(),
+                                  CommunicationCriteria.fromClient(client),
+                                  CommunicationCriteria.BY_KEY,
+                                  Integer.MAX_VALUE)),
+                    keys(result), "communications of the client found");
+
+        // no index for negative amounts, which the clients without debts
+        // are above
+        Check.equal(11L, Query.clients(network)
+                              .where(ClientCriteria.debtsAbove(-1)).count(),
+                    "clients above a negative amount");
+        Check.equal(10L, Query.clients(network)
+                              .where(ClientCriteria.debtsAbove(0)).count(),
+                    "clients above no amount");
+    }
+
+    /**
+     * Results are in their natural order, or the one asked for, whatever
+     * the order of the index they come from.
+     */
+    private static void ordering(Network network) throws Exception {
+        Collection<Client> clients = network.getAllClients();
+        Check.equal(expected(clients, Client::hasDebts, ClientCriteria.BY_KEY,
+                             Integer.MAX_VALUE),
+                    Query.clients(network).where(ClientCriteria.withDebts())
+                         .list(),
+                    "clients with debts by key");
+        Check.equal(expected(clients, Client::hasDebts,
+                             ClientCriteria.BY_DEBTS, Integer.MAX_VALUE),
+                    Query.clients(network).where(ClientCriteria.withDebts())
+                         .orderBy(ClientCriteria.BY_DEBTS).list(),
+                    "clients with debts by debts");
+        Check.equal(expected(clients, client -> client.getDebts() > 0,
+                             ClientCriteria.BY_DEBTS, 3),
+                    Query.clients(network)
+                         .where(ClientCriteria.debtsAbove(0))
+                         .orderBy(ClientCriteria.BY_DEBTS).limit(3).list(),
+                    "top debtors");
+        Check.equal(List.of("idle"),
+                    Query.clients(network)
+                         .where(ClientCriteria.withoutDebts())
+                         .select(Client::getKey),
+                    "clients without debts");
+    }
+
+    /**
+     * Parallel queries give the results of sequential ones, in the same
+     * order.
+     */
+    private static void parallel(Network network) throws Exception {
+        Collection<Communication> communications =
+                network.getAllCommunications();
+        Check.isTrue(communications.size() >= 100,
+                     "communications queried in parallel");
+
+        Criterion<Communication> voice = CommunicationCriteria.ofType("VOICE");
+        Check.equal(keys(expected(communications, voice,
+                                  CommunicationCriteria.BY_KEY,
+                                  Integer.MAX_VALUE)),
+                    keys(Query.communications(network).where(voice).list()),
+                    "voice communications");
+
+        Predicate<Communication> expensive =
+                CommunicationCriteria.costAbove(16 * 100);
+        Check.equal(keys(expected(communications, expensive,
+                                  CommunicationCriteria.BY_COST, 25)),
+                    keys(Query.communications(network).where(expensive)
+                              .orderBy(CommunicationCriteria.BY_COST)
+                              .limit(25).list()),
+                    "most expensive communications");
+        Check.equal(keys(expected(communications, expensive,
+                                  CommunicationCriteria.BY_KEY, 25)),
+                    keys(Query.communications(network).where(expensive)
+                              .limit(25).list()),
+                    "first expensive communications");
+        Check.equal(communications.stream().filter(expensive).count(),
+                    Query.communications(network).where(expensive).count(),
+                    "expensive communications counted");
+        Check.equal(keys(expected(communications, expensive,
+                                  CommunicationCriteria.BY_KEY,
+                                  Integer.MAX_VALUE)),
+                    Query.communications(network).where(expensive)
+                         .select(Communication::getKey),
+                    "keys of the expensive communications");
+
+        Check.isTrue(Query.inPool(() -> Thread.currentThread().getName())
+                          .startsWith("query-"),
+                     "computation in the pool of queries");
+    }
+}
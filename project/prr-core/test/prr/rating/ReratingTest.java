@@ -0,0 +1,80 @@
+package prr.rating;
+
+import java.util.Map;
+
+import prr.Check;
+import prr.Network;
+import prr.clients.Client;
+import prr.clients.Money;
+import prr.clients.TariffTable;
+import prr.terminals.Terminal;
+
+/**
+ * Deltas of rerating and their commit.
+ */
+public class ReratingTest {
+
+    public static void main(String[] args) throws Exception {
+        Network network = Check.twoClients(new Network());
+        Terminal terminal = network.getTerminal("100001");
+        Client alice = network.getClient("alice");
+        terminal.addFriend(network, "100002");
+
+        // 10, 16 and 240 with the default tariffs of a NORMAL client
+        terminal.sendTextCommunication(network, "100002", "x".repeat(10));
+        terminal.sendTextCommunication(network, "100002", "x".repeat(60));
+        terminal.sendTextCommunication(network, "100002", "x".repeat(120));
+        // 20 for 10 units, half of it to a friend
+        terminal.startInteractiveCommunication(network, "100002", "VOICE");
+        terminal.endInteractiveCommunication(network, 10);
+        Check.equal(Money.of(100), network.getCommunication(4).getCost(),
+                    "cost of the voice communication");
+
+        unchangedTariffs(network, terminal);
+
+        terminal.payCommunication(network, 1);
+        TariffTable cheap = new TariffTable(new int[0],
+                new long[] { Money.of(1) }, new long[] { 0 },
+                Money.of(10), Money.of(30), 50);
+        Rerating rerating = Rerating.of(network, Map.of("NORMAL", cheap));
+        Check.equal(4L, rerating.getRated(), "communications rated");
+        Check.equal(3, rerating.getChanged(), "unpaid communications changed");
+        Check.equal(Money.of(1 - 10), rerating.getPaidDelta(), "paid delta");
+        // the voice communication is still rated as one to a friend
+        Check.equal(Money.of((1 - 16) + (1 - 240) + (50 - 100)),
+                    rerating.getUnpaidDelta(), "unpaid delta");
+        Check.equal(rerating.getDelta(), rerating.getTerminalDelta(terminal),
+                    "delta of the terminal");
+        Check.equal(Map.of(alice, rerating.getDelta()),
+                    rerating.getClientDeltas(), "deltas of the clients");
+
+        // changed since they were rated: left as they are
+        terminal.payCommunication(network, 2);
+        terminal.rerateCommunication(network, 3, Money.of(5));
+        long debts = alice.getDebts();
+        Check.equal(1, rerating.commit(), "communications committed");
+        Check.equal(Money.of(50), network.getCommunication(4).getCost(),
+                    "cost committed");
+        Check.equal(Money.of(5), network.getCommunication(3).getCost(),
+                    "cost changed after rating");
+        Check.equal(debts + Money.of(50 - 100), alice.getDebts(),
+                    "debts of the client");
+        Check.isTrue(network.checkBalance(), "balance of the network");
+    }
+
+    /**
+     * Rerating with the tariffs which charged the communications changes
+     * nothing, even if the friends of the terminal have changed.
+     */
+    private static void unchangedTariffs(Network network, Terminal terminal)
+            throws Exception {
+        Rerating rerating = Rerating.of(network, Map.of());
+        Check.equal(4L, rerating.getRated(), "communications rated");
+        Check.equal(0L, rerating.getDelta(), "delta with the same tariffs");
+
+        terminal.removeFriend(network, "100002");
+        rerating = Rerating.of(network, Map.of());
+        Check.equal(0L, rerating.getDelta(), "delta after a friend is removed");
+        Check.equal(0, rerating.commit(), "communications committed");
+    }
+}